@@ -0,0 +1,178 @@
+package uistuff;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of the {@link PixelKernels} based on the incubating
+ * Vector API. This class is kept in its own source root, src-vector, because
+ * compiling it requires javac --add-modules jdk.incubator.vector, and the
+ * rest of the project must build without that option. Running it requires
+ * the same option for java. Without the class or the module
+ * {@link PixelKernels#get()} falls back to the scalar implementation.
+ *
+ * The color space conversions multiply the components by the fixed-point
+ * coefficients of PixelKernels instead of looking the products up in its
+ * tables, which yields the same sums and results. Byte samples are widened
+ * into and narrowed from a small buffer of ints by plain loops. The pixels
+ * left over after the last full vector are handled by the scalar code.
+ *
+ * @version 1.0
+ */
+class VectorPixelKernels extends PixelKernels {
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+	/* pixels converted through a buffer of ints at a time */
+	private static final int CHUNK = 512;
+
+	/*
+	 * The buffers of ints, three per thread for the three planes of YCbCr.
+	 * They are allocated once per thread, not per call.
+	 */
+	private static final ThreadLocal<int[][]> SCRATCH = new ThreadLocal<int[][]>() {
+		protected int[][] initialValue() {
+			return new int[3][CHUNK];
+		}
+	};
+
+	boolean isVectorized() {
+		return true;
+	}
+
+	void grayToARGB(int[] gray, int srcOffset, int[] argb, int dstOffset,
+			int count) {
+		int i = 0;
+		for (int bound = INTS.loopBound(count); i < bound; i += INTS.length()) {
+			IntVector g = IntVector.fromArray(INTS, gray, srcOffset + i);
+			g.lanewise(VectorOperators.LSHL, 16).or(
+					g.lanewise(VectorOperators.LSHL, 8)).or(g).or(255 << 24)
+					.intoArray(argb, dstOffset + i);
+		}
+		super.grayToARGB(gray, srcOffset + i, argb, dstOffset + i, count - i);
+	}
+
+	void argbToGray(int[] argb, int srcOffset, int[] gray, int dstOffset,
+			int count) {
+		int i = 0;
+		for (int bound = INTS.loopBound(count); i < bound; i += INTS.length()) {
+			luminance(IntVector.fromArray(INTS, argb, srcOffset + i))
+					.intoArray(gray, dstOffset + i);
+		}
+		super.argbToGray(argb, srcOffset + i, gray, dstOffset + i, count - i);
+	}
+
+	void argbToGray(int[] argb, int srcOffset, byte[] gray, int dstOffset,
+			int count) {
+		int[] scratch = SCRATCH.get()[0];
+		int i = 0;
+		for (int bound = INTS.loopBound(count); i < bound;) {
+			int end = Math.min(bound, i + CHUNK);
+			for (int j = 0; i + j < end; j += INTS.length()) {
+				luminance(IntVector.fromArray(INTS, argb, srcOffset + i + j))
+						.intoArray(scratch, j);
+			}
+			toBytes(scratch, end - i, gray, dstOffset + i);
+			i = end;
+		}
+		super.argbToGray(argb, srcOffset + i, gray, dstOffset + i, count - i);
+	}
+
+	void argbToYCbCr(int[] argb, int srcOffset, byte[] samples, int yOffset,
+			int cbOffset, int crOffset, int count) {
+		int[][] scratch = SCRATCH.get();
+		int[] y = scratch[0];
+		int[] cb = scratch[1];
+		int[] cr = scratch[2];
+		int i = 0;
+		for (int bound = INTS.loopBound(count); i < bound;) {
+			int end = Math.min(bound, i + CHUNK);
+			for (int j = 0; i + j < end; j += INTS.length()) {
+				IntVector pixel = IntVector.fromArray(INTS, argb, srcOffset
+						+ i + j);
+				IntVector r = pixel.lanewise(VectorOperators.ASHR, 16).and(
+						0xff);
+				IntVector g = pixel.lanewise(VectorOperators.ASHR, 8).and(0xff);
+				IntVector b = pixel.and(0xff);
+				r.mul(Y_R).add(g.mul(Y_G)).add(b.mul(Y_B)).add(BIAS)
+						.lanewise(VectorOperators.ASHR, SHIFT).intoArray(y, j);
+				clamp(r.mul(CB_R).add(g.mul(CB_G)).add(b.mul(CB_B)).add(
+						(CENTER << SHIFT) + BIAS)).intoArray(cb, j);
+				clamp(r.mul(CR_R).add(g.mul(CR_G)).add(b.mul(CR_B)).add(
+						(CENTER << SHIFT) + BIAS)).intoArray(cr, j);
+			}
+			toBytes(y, end - i, samples, yOffset + i);
+			toBytes(cb, end - i, samples, cbOffset + i);
+			toBytes(cr, end - i, samples, crOffset + i);
+			i = end;
+		}
+		super.argbToYCbCr(argb, srcOffset + i, samples, yOffset + i, cbOffset
+				+ i, crOffset + i, count - i);
+	}
+
+	void yCbCrToARGB(byte[] samples, int yOffset, int cbOffset,
+			int crOffset, int[] argb, int dstOffset, int count) {
+		int[][] scratch = SCRATCH.get();
+		int[] y = scratch[0];
+		int[] cb = scratch[1];
+		int[] cr = scratch[2];
+		int i = 0;
+		for (int bound = INTS.loopBound(count); i < bound;) {
+			int end = Math.min(bound, i + CHUNK);
+			toInts(samples, yOffset + i, end - i, y);
+			toInts(samples, cbOffset + i, end - i, cb);
+			toInts(samples, crOffset + i, end - i, cr);
+			for (int j = 0; i + j < end; j += INTS.length()) {
+				IntVector luminance = IntVector.fromArray(INTS, y, j)
+						.lanewise(VectorOperators.LSHL, SHIFT).add(BIAS);
+				IntVector blueDifference = IntVector.fromArray(INTS, cb, j)
+						.sub(CENTER);
+				IntVector redDifference = IntVector.fromArray(INTS, cr, j)
+						.sub(CENTER);
+				IntVector r = clamp(luminance.add(redDifference.mul(R_CR)));
+				IntVector g = clamp(luminance.add(blueDifference.mul(G_CB))
+						.add(redDifference.mul(G_CR)));
+				IntVector b = clamp(luminance.add(blueDifference.mul(B_CB)));
+				r.lanewise(VectorOperators.LSHL, 16).or(
+						g.lanewise(VectorOperators.LSHL, 8)).or(b).or(
+						255 << 24).intoArray(argb, dstOffset + i + j);
+			}
+			i = end;
+		}
+		super.yCbCrToARGB(samples, yOffset + i, cbOffset + i, crOffset + i,
+				argb, dstOffset + i, count - i);
+	}
+
+	/* the gray value of the pixels, like the tables of the scalar code */
+	private static IntVector luminance(IntVector pixel) {
+		IntVector r = pixel.lanewise(VectorOperators.ASHR, 16).and(0xff);
+		IntVector g = pixel.lanewise(VectorOperators.ASHR, 8).and(0xff);
+		IntVector b = pixel.and(0xff);
+		return r.mul(Y_R).add(g.mul(Y_G)).add(b.mul(Y_B)).add(BIAS).lanewise(
+				VectorOperators.ASHR, SHIFT);
+	}
+
+	/* shifts the fixed-point sums back and clamps them to 0 to 255 */
+	private static IntVector clamp(IntVector sums) {
+		return sums.lanewise(VectorOperators.ASHR, SHIFT).max(0).min(255);
+	}
+
+	/*
+	 * Narrows and widens the samples. The JDK 17 compiler turns these plain
+	 * loops into SIMD instructions, which the shape changing conversions of
+	 * the Vector API do not get for every vector size.
+	 */
+	private static void toBytes(int[] values, int count, byte[] destination,
+			int offset) {
+		for (int i = 0; i < count; i++) {
+			destination[offset + i] = (byte) values[i];
+		}
+	}
+
+	private static void toInts(byte[] samples, int offset, int count,
+			int[] values) {
+		for (int i = 0; i < count; i++) {
+			values[i] = samples[offset + i] & 0xff;
+		}
+	}
+}
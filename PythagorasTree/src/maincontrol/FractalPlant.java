@@ -0,0 +1,26 @@
+package maincontrol;
+
+import java.awt.Color;
+
+import uistuff.LSystem;
+import uistuff.Turtle;
+
+public class FractalPlant {
+	public static void main(String[] args) {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+
+		LSystem plant = new LSystem("X");
+		plant.addRule('X', "F+[[X]-X]-F[-FX]+X");
+		plant.addRule('F', "FF");
+		plant.setAngle(25);
+		/* every iteration doubles the height of the plant */
+		plant.setStep(220.0 / (1 << iterations));
+
+		Turtle.setCanvasSize(500, 600);
+		Turtle.setColor(new Color(40, 120, 30));
+		Turtle.setPos(80, 10);
+		Turtle.setAngle(70);
+		plant.draw(iterations);
+		Turtle.showGraphics("Fractal Plant");
+	}
+}
@@ -0,0 +1,276 @@
+package maincontrol;
+
+import java.awt.Color;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import uistuff.DrawingTurtle;
+import uistuff.FrameBuffer;
+import uistuff.PixelCanvas;
+import uistuff.Turtle;
+
+/**
+ * Draws a Pythagoras tree. Every square carries two smaller squares which
+ * stand on the legs of a right triangle erected on its top edge.
+ *
+ * Drawing runs in a ForkJoinPool. The canvas is split into tiles, and every
+ * tile is drawn by its own DrawingTurtle which is clipped to that tile.
+ * Subtrees which cannot reach a tile are skipped entirely, and subtrees
+ * smaller than a pixel are drawn as a single dot, so the work per tile
+ * follows the visible part of the tree instead of its total size. Together
+ * with the viewport this allows to zoom deep into trees of high depth.
+ *
+ * @version 1.0
+ */
+public class PythagorasTree {
+	/* regions with more pixels are split further */
+	private static final int SPLIT_AREA = 128 * 128;
+
+	private final int depth;
+
+	private final int angle;
+
+	private final double size;
+
+	private final double cos;
+
+	private final double sin;
+
+	/* radius of the circle around a square containing its whole subtree */
+	private final double extent;
+
+	private final Color[] colors;
+
+	private boolean filled = true;
+
+	private double panX = 0;
+
+	private double panY = 0;
+
+	private double zoom = 1;
+
+	/**
+	 * Creates a Pythagoras tree.
+	 *
+	 * @param depth
+	 *            the number of square generations, 1 draws only the trunk
+	 * @param angle
+	 *            the angle in degrees between the top edge of a square and
+	 *            the base of its left child, between 1 and 89
+	 * @param size
+	 *            the side length of the trunk square in pixels
+	 */
+	public PythagorasTree(int depth, int angle, double size) {
+		if (depth < 1 || angle <= 0 || angle >= 90 || size <= 0) {
+			throw new IllegalArgumentException("Illegal tree parameters");
+		}
+		this.depth = depth;
+		this.angle = angle;
+		this.size = size;
+		this.cos = Math.cos(2.0 * Math.PI * angle / 360.0);
+		this.sin = Math.sin(2.0 * Math.PI * angle / 360.0);
+
+		/*
+		 * The center of a child is at most (s + r * s) / sqrt(2) away from the
+		 * center of its parent, with r the larger of the two scale factors.
+		 * Summing up the geometric series bounds the whole subtree.
+		 */
+		double r = Math.max(cos, sin);
+		this.extent = (1 + r) / (Math.sqrt(2) * (1 - r));
+
+		this.colors = new Color[depth];
+		for (int i = 0; i < depth; i++) {
+			double t = depth == 1 ? 0 : (double) i / (depth - 1);
+			colors[i] = new Color((int) (120 * (1 - t)), (int) (70 + 110 * t),
+					(int) (20 * (1 - t)));
+		}
+	}
+
+	/**
+	 * Chooses between filled squares, which is the default, and outlines.
+	 *
+	 * @param filled
+	 *            true to fill the squares
+	 */
+	public void setFilled(boolean filled) {
+		this.filled = filled;
+	}
+
+	/**
+	 * Sets the viewport used for drawing, see
+	 * {@link DrawingTurtle#setViewport(double, double, double)}.
+	 *
+	 * @param panX
+	 *            the x-coordinate shown at the left border of the canvas
+	 * @param panY
+	 *            the y-coordinate shown at the bottom border of the canvas
+	 * @param zoom
+	 *            the number of pixels per unit
+	 */
+	public void setViewport(double panX, double panY, double zoom) {
+		if (!(zoom > 0)) {
+			throw new IllegalArgumentException("Illegal zoom " + zoom);
+		}
+		this.panX = panX;
+		this.panY = panY;
+		this.zoom = zoom;
+	}
+
+	/**
+	 * Draws the tree into the canvas using the common ForkJoinPool.
+	 *
+	 * @param canvas
+	 *            the canvas to draw into
+	 * @param x
+	 *            the x-coordinate of the lower left corner of the trunk
+	 * @param y
+	 *            the y-coordinate of the lower left corner of the trunk
+	 */
+	public void draw(PixelCanvas canvas, double x, double y) {
+		draw(canvas, x, y, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Draws the tree into the canvas. The coordinates are turtle
+	 * coordinates, which are mapped to the canvas by the viewport.
+	 *
+	 * @param canvas
+	 *            the canvas to draw into
+	 * @param x
+	 *            the x-coordinate of the lower left corner of the trunk
+	 * @param y
+	 *            the y-coordinate of the lower left corner of the trunk
+	 * @param pool
+	 *            the pool executing the drawing
+	 */
+	public void draw(PixelCanvas canvas, double x, double y, ForkJoinPool pool) {
+		pool.invoke(new RegionTask(canvas, x, y, 0, 0, canvas.getWidth(),
+				canvas.getHeight()));
+	}
+
+	private class RegionTask extends RecursiveAction {
+		private static final long serialVersionUID = 4721795320455018334L;
+
+		private final PixelCanvas canvas;
+
+		private final double x;
+
+		private final double y;
+
+		private final int left;
+
+		private final int top;
+
+		private final int width;
+
+		private final int height;
+
+		RegionTask(PixelCanvas canvas, double x, double y, int left, int top,
+				int width, int height) {
+			this.canvas = canvas;
+			this.x = x;
+			this.y = y;
+			this.left = left;
+			this.top = top;
+			this.width = width;
+			this.height = height;
+		}
+
+		protected void compute() {
+			if ((long) width * height > SPLIT_AREA) {
+				if (width >= height) {
+					int half = width / 2;
+					invokeAll(new RegionTask(canvas, x, y, left, top, half,
+							height), new RegionTask(canvas, x, y, left + half,
+							top, width - half, height));
+				} else {
+					int half = height / 2;
+					invokeAll(new RegionTask(canvas, x, y, left, top, width,
+							half), new RegionTask(canvas, x, y, left, top
+							+ half, width, height - half));
+				}
+			} else {
+				DrawingTurtle turtle = new DrawingTurtle(canvas, left, top,
+						width, height);
+				turtle.setViewport(panX, panY, zoom);
+				drawSquare(turtle, x, y, 0, size, 0);
+			}
+		}
+	}
+
+	private void drawSquare(DrawingTurtle turtle, double x, double y,
+			int heading, double s, int level) {
+		double dx = Math.cos(2.0 * Math.PI * heading / 360.0);
+		double dy = Math.sin(2.0 * Math.PI * heading / 360.0);
+		double centerX = x + s / 2 * (dx - dy);
+		double centerY = y + s / 2 * (dy + dx);
+		double radius = (level + 1 < depth ? extent : Math.sqrt(0.5)) * s;
+
+		if (!turtle.isVisible(centerX, centerY, radius)) {
+			return;
+		}
+
+		turtle.setColor(colors[level]);
+		if (!turtle.isLargerThanPixel(radius)) {
+			turtle.setPos(centerX, centerY);
+			turtle.forward(0);
+			return;
+		}
+
+		turtle.setPos(x, y);
+		turtle.setAngle(heading);
+		if (filled) {
+			turtle.beginFill();
+			turtle.penUp();
+		}
+		for (int i = 0; i < 4; i++) {
+			turtle.forward(s);
+			turtle.left(90);
+		}
+		if (filled) {
+			turtle.penDown();
+			turtle.endFill();
+		}
+
+		if (level + 1 < depth) {
+			/* the upper left corner carries the left child */
+			double cornerX = x - s * dy;
+			double cornerY = y + s * dx;
+			double leftSize = s * cos;
+			double rightSize = s * sin;
+			int leftHeading = heading + angle;
+
+			drawSquare(turtle, cornerX, cornerY, leftHeading, leftSize,
+					level + 1);
+
+			double apexX = cornerX + leftSize
+					* Math.cos(2.0 * Math.PI * leftHeading / 360.0);
+			double apexY = cornerY + leftSize
+					* Math.sin(2.0 * Math.PI * leftHeading / 360.0);
+			drawSquare(turtle, apexX, apexY, leftHeading - 90, rightSize,
+					level + 1);
+		}
+	}
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		int angle = args.length > 1 ? Integer.parseInt(args[1]) : 45;
+		double size = args.length > 2 ? Double.parseDouble(args[2]) : 60;
+		double zoom = args.length > 3 ? Double.parseDouble(args[3]) : 1;
+
+		Turtle.setCanvasSize((int) (10 * size), (int) (6.5 * size));
+		FrameBuffer canvas = Turtle.getCanvas();
+
+		/* the point of the tree shown in the center of the canvas */
+		double centerX = args.length > 4 ? Double.parseDouble(args[4])
+				: canvas.getWidth() / 2.0;
+		double centerY = args.length > 5 ? Double.parseDouble(args[5])
+				: canvas.getHeight() / 2.0;
+
+		PythagorasTree tree = new PythagorasTree(depth, angle, size);
+		tree.setViewport(centerX - canvas.getWidth() / (2 * zoom), centerY
+				- canvas.getHeight() / (2 * zoom), zoom);
+		tree.draw(canvas, (canvas.getWidth() - size) / 2, size / 10);
+		Turtle.showGraphics("Pythagoras Tree");
+	}
+}
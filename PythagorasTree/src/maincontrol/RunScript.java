@@ -0,0 +1,35 @@
+package maincontrol;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import uistuff.Turtle;
+import uistuff.TurtleScript;
+
+/**
+ * Runs a turtle script, see {@link TurtleScript}. The first argument is the
+ * file containing the script. If a second argument is given the picture is
+ * saved into this PNG or PPM file instead of being shown.
+ *
+ * @version 1.0
+ */
+public class RunScript {
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: RunScript <script> [<image file>]");
+			System.exit(1);
+		}
+		String source = new String(Files.readAllBytes(Paths.get(args[0])),
+				StandardCharsets.UTF_8);
+		TurtleScript script = TurtleScript.compile(source);
+
+		script.run();
+		if (args.length > 1) {
+			Turtle.saveGraphics(args[1]);
+		} else {
+			Turtle.showGraphics(args[0]);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package uistuff;
+
+/**
+ * Converts whole rasters between packed RGB, gray-scale and the YCbCr
+ * color space. The conversions use integer fixed-point arithmetic and
+ * allocate nothing per pixel. They are done by the {@link PixelKernels}, so
+ * they run on SIMD instructions where the Vector API is available.
+ *
+ * Y, Cb and Cr are stored as bytes scaled like the gray values, i.e. 256
+ * times the values computed by ImageGrabberUtilities.convertRGBToYCbCr. All
+ * results lie within one level of the floating point formulas of the
+ * ImageGrabberUtilities truncated to int, and RGB results are clamped to 0
+ * to 255.
+ *
+ * @version 1.0
+ */
+public class ColorConverter {
+	private ColorConverter() {
+	}
+
+	/**
+	 * Converts ARGB values into gray values, the luminance Y of the YCbCr
+	 * color space between 0 and 255.
+	 *
+	 * @param argb
+	 *            the source pixels
+	 * @param srcOffset
+	 *            the index of the first source pixel
+	 * @param gray
+	 *            the destination array
+	 * @param dstOffset
+	 *            the index of the first gray value
+	 * @param count
+	 *            the number of pixels to convert
+	 */
+	public static void argbToGray(int[] argb, int srcOffset, int[] gray,
+			int dstOffset, int count) {
+		PixelKernels.get().argbToGray(argb, srcOffset, gray, dstOffset, count);
+	}
+
+	/**
+	 * Converts ARGB values into gray samples, see
+	 * {@link #argbToGray(int[], int, int[], int, int)}.
+	 */
+	public static void argbToGray(int[] argb, int srcOffset, byte[] gray,
+			int dstOffset, int count) {
+		PixelKernels.get().argbToGray(argb, srcOffset, gray, dstOffset, count);
+	}
+
+	/**
+	 * Converts ARGB values into Y, Cb and Cr samples. The three destination
+	 * offsets usually point into the planes of one array.
+	 *
+	 * @param argb
+	 *            the source pixels
+	 * @param srcOffset
+	 *            the index of the first source pixel
+	 * @param samples
+	 *            the destination array
+	 * @param yOffset
+	 *            the index of the first luminance sample
+	 * @param cbOffset
+	 *            the index of the first blue difference sample
+	 * @param crOffset
+	 *            the index of the first red difference sample
+	 * @param count
+	 *            the number of pixels to convert
+	 */
+	public static void argbToYCbCr(int[] argb, int srcOffset, byte[] samples,
+			int yOffset, int cbOffset, int crOffset, int count) {
+		PixelKernels.get().argbToYCbCr(argb, srcOffset, samples, yOffset,
+				cbOffset, crOffset, count);
+	}
+
+	/**
+	 * Converts Y, Cb and Cr samples into opaque ARGB values.
+	 *
+	 * @param samples
+	 *            the source array
+	 * @param yOffset
+	 *            the index of the first luminance sample
+	 * @param cbOffset
+	 *            the index of the first blue difference sample
+	 * @param crOffset
+	 *            the index of the first red difference sample
+	 * @param argb
+	 *            the destination pixels
+	 * @param dstOffset
+	 *            the index of the first destination pixel
+	 * @param count
+	 *            the number of pixels to convert
+	 */
+	public static void yCbCrToARGB(byte[] samples, int yOffset, int cbOffset,
+			int crOffset, int[] argb, int dstOffset, int count) {
+		PixelKernels.get().yCbCrToARGB(samples, yOffset, cbOffset, crOffset,
+				argb, dstOffset, count);
+	}
+
+	/**
+	 * Converts a packed raster into a gray-scale raster of the same size.
+	 *
+	 * @param source
+	 *            the pixels to convert
+	 * @param destination
+	 *            a raster with one channel
+	 * @return the destination raster
+	 */
+	public static PlanarRaster toGrayScale(PackedRaster source,
+			PlanarRaster destination) {
+		checkSize(source, destination, PlanarRaster.GRAY);
+		for (int y = 0; y < source.getHeight(); y++) {
+			argbToGray(source.getPixels(), source.getOffset() + y
+					* source.getStride(), destination.getSamples(), y
+					* destination.getStride(), source.getWidth());
+		}
+		return destination;
+	}
+
+	/**
+	 * Converts a packed raster into a raster with the planes Y = 0, Cb = 1 and
+	 * Cr = 2 of the same size.
+	 *
+	 * @param source
+	 *            the pixels to convert
+	 * @param destination
+	 *            a raster with three channels
+	 * @return the destination raster
+	 */
+	public static PlanarRaster toYCbCr(PackedRaster source,
+			PlanarRaster destination) {
+		checkSize(source, destination, PlanarRaster.RGB);
+		int plane = destination.getPlaneSize();
+		for (int y = 0; y < source.getHeight(); y++) {
+			int row = y * destination.getStride();
+			argbToYCbCr(source.getPixels(), source.getOffset() + y
+					* source.getStride(), destination.getSamples(), row, plane
+					+ row, 2 * plane + row, source.getWidth());
+		}
+		return destination;
+	}
+
+	/**
+	 * Converts a raster with the planes Y = 0, Cb = 1 and Cr = 2 into a
+	 * packed raster of the same size.
+	 *
+	 * @param source
+	 *            the YCbCr samples, e.g. created by toYCbCr
+	 * @param destination
+	 *            the raster receiving the pixels
+	 * @return the destination raster
+	 */
+	public static PackedRaster toRGB(PlanarRaster source,
+			PackedRaster destination) {
+		checkSize(destination, source, PlanarRaster.RGB);
+		int plane = source.getPlaneSize();
+		for (int y = 0; y < source.getHeight(); y++) {
+			int row = y * source.getStride();
+			yCbCrToARGB(source.getSamples(), row, plane + row, 2 * plane + row,
+					destination.getPixels(), destination.getOffset() + y
+							* destination.getStride(), source.getWidth());
+		}
+		return destination;
+	}
+
+	private static void checkSize(PackedRaster packed, PlanarRaster planar,
+			int channels) {
+		if (packed.getWidth() != planar.getWidth()
+				|| packed.getHeight() != planar.getHeight()
+				|| planar.getChannels() != channels) {
+			throw new IllegalArgumentException("Rasters "
+					+ packed.getWidth() + "x" + packed.getHeight() + " and "
+					+ planar.getWidth() + "x" + planar.getHeight() + "x"
+					+ planar.getChannels() + " do not match");
+		}
+	}
+}
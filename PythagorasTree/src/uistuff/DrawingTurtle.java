@@ -0,0 +1,778 @@
+package uistuff;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A DrawingTurtle is a turtle with its own position, heading and pen which
+ * draws into a PixelCanvas. In contrast to the static methods of
+ * {@link Turtle} any number of DrawingTurtles can exist at the same time.
+ *
+ * A single DrawingTurtle must only be used by one thread at a time. Different
+ * turtles may draw concurrently, either into separate canvases or into
+ * disjoint clip regions of a shared canvas. Pixel writes are not
+ * synchronized, so the clip regions of turtles sharing a canvas must not
+ * overlap.
+ *
+ * The turtle uses a coordinate system with the origin in the lower left
+ * corner of the canvas and the y-axis pointing upwards. The clip region on the
+ * other hand is given in canvas coordinates, i.e. with the first row at the
+ * top, so that it matches tiles of the canvas.
+ *
+ * @version 1.0
+ */
+public class DrawingTurtle {
+	private final PixelCanvas canvas;
+
+	private final int clipX0;
+
+	private final int clipY0;
+
+	private final int clipX1;
+
+	private final int clipY1;
+
+	private double x = 0;
+
+	private double y = 0;
+
+	private double angle = 0;
+
+	/* unit vector of the heading, updated whenever the heading changes */
+	private double dirX = 1;
+
+	private double dirY = 0;
+
+	private int stepWidth = 1;
+
+	private Color color = Color.BLACK;
+
+	private int argb = FrameBuffer.toARGB(color);
+
+	private boolean isDrawing = true;
+
+	private TurtleProgram recording = null;
+
+	/* the commands and operands of the recording drawn by flush so far */
+	private int replayedCommands = 0;
+
+	private int replayedOperands = 0;
+
+	private PolygonFiller filler = null;
+
+	/* the viewport maps turtle coordinates to pixels */
+	private double panX = 0;
+
+	private double panY = 0;
+
+	private double zoom = 1;
+
+	private boolean filling = false;
+
+	/* the outline collected since beginFill */
+	private double[] fillX = null;
+
+	private double[] fillY = null;
+
+	private int fillCount = 0;
+
+	/* saved positions and headings, three values per entry */
+	private double[] states = null;
+
+	private int stateCount = 0;
+
+	private static final long MAX_EXTENT = 1 << 30;
+
+	/* cosine and sine of the integer headings from 0 to 359 degrees */
+	private static final double[] COS = new double[360];
+
+	private static final double[] SIN = new double[360];
+
+	static {
+		for (int i = 0; i < 360; i++) {
+			COS[i] = Math.cos(2.0 * Math.PI * i / 360.0);
+			SIN[i] = Math.sin(2.0 * Math.PI * i / 360.0);
+		}
+	}
+
+	/**
+	 * Creates a turtle which may draw onto the whole canvas.
+	 *
+	 * @param canvas
+	 *            the canvas the turtle draws into
+	 */
+	public DrawingTurtle(PixelCanvas canvas) {
+		this(canvas, 0, 0, canvas.getWidth(), canvas.getHeight());
+	}
+
+	/**
+	 * Creates a turtle which only draws into a rectangular region of the
+	 * canvas. Pixels outside of this region are never touched.
+	 *
+	 * @param canvas
+	 *            the canvas the turtle draws into
+	 * @param clipX
+	 *            the leftmost column of the clip region
+	 * @param clipY
+	 *            the topmost row of the clip region
+	 * @param clipWidth
+	 *            the width of the clip region
+	 * @param clipHeight
+	 *            the height of the clip region
+	 */
+	public DrawingTurtle(PixelCanvas canvas, int clipX, int clipY,
+			int clipWidth, int clipHeight) {
+		this.canvas = canvas;
+		this.clipX0 = Math.max(0, clipX);
+		this.clipY0 = Math.max(0, clipY);
+		this.clipX1 = Math.min(canvas.getWidth(), clipX + clipWidth);
+		this.clipY1 = Math.min(canvas.getHeight(), clipY + clipHeight);
+	}
+
+	protected void putPixel(int x, int y) {
+		int row = canvas.height - y - 1;
+
+		if (!isDrawing) {
+			return;
+		}
+		if (row < clipY0 || row >= clipY1 || x < clipX0 || x >= clipX1) {
+			if (RenderMetrics.enabled) {
+				RenderMetrics.recordPixels(0, 1);
+			}
+			return;
+		}
+
+		canvas.setPixel(x, row, argb);
+		if (RenderMetrics.enabled) {
+			RenderMetrics.recordPixels(1, 0);
+		}
+	}
+
+	/**
+	 * Draws a Bresenham line between two points given in turtle coordinates.
+	 * The line is clipped against the clip region before it is rasterized,
+	 * so only the visible pixels are visited, and the inner loops neither
+	 * check bounds nor the pen. The pixels drawn are exactly those the
+	 * unclipped Bresenham walk would draw inside the clip region.
+	 */
+	protected void drawLine(int x1, int y1, int x2, int y2) {
+		if (!isDrawing) {
+			return;
+		}
+
+		long hx = Math.abs((long) x2 - x1);
+		long hy = Math.abs((long) y2 - y1);
+
+		if (hx > MAX_EXTENT || hy > MAX_EXTENT) {
+			/* keeps the clipping arithmetic below within the range of long */
+			int xm = (int) (((long) x1 + x2) >> 1);
+			int ym = (int) (((long) y1 + y2) >> 1);
+			drawLine(x1, y1, xm, ym);
+			drawLine(xm, ym, x2, y2);
+			return;
+		}
+
+		/* the clip region in turtle coordinates */
+		int xLow = clipX0;
+		int xHigh = clipX1 - 1;
+		int yLow = canvas.height - clipY1;
+		int yHigh = canvas.height - 1 - clipY0;
+
+		long written;
+
+		if (hx == 0 && hy == 0) {
+			written = 0;
+			if (x1 >= xLow && x1 <= xHigh && y1 >= yLow && y1 <= yHigh) {
+				int row = canvas.height - 1 - y1;
+				canvas.setPixel(x1, row, argb);
+				markDirty(x1, row, x1, row);
+				written = 1;
+			}
+		} else {
+			int xInc = x2 < x1 ? -1 : 1;
+			int yInc = y2 < y1 ? -1 : 1;
+
+			if (hy <= hx) {
+				written = rasterize(x1, y1, xInc, yInc, hx, hy, xLow, xHigh,
+						yLow, yHigh, true);
+			} else {
+				written = rasterize(y1, x1, yInc, xInc, hy, hx, yLow, yHigh,
+						xLow, xHigh, false);
+			}
+		}
+
+		if (RenderMetrics.enabled) {
+			RenderMetrics.recordLine(Math.max(hx, hy) + 1, written);
+		}
+	}
+
+	/*
+	 * Rasterizes a line along its major axis. m and n denote the major and the
+	 * minor coordinate. After i steps along the major axis the Bresenham walk
+	 * has taken ceil((2 * i * hn - hm) / (2 * hm)) minor steps, which allows
+	 * to start and stop the walk directly at the borders of the clip region.
+	 * Returns the number of pixels drawn.
+	 */
+	private long rasterize(int m1, int n1, int mInc, int nInc, long hm,
+			long hn, int mLow, int mHigh, int nLow, int nHigh, boolean xMajor) {
+		long first = Math.max(0, mInc > 0 ? mLow - (long) m1 : m1
+				- (long) mHigh);
+		long last = Math.min(hm, mInc > 0 ? mHigh - (long) m1 : m1
+				- (long) mLow);
+
+		/* the allowed number of minor steps */
+		long tLow = nInc > 0 ? nLow - (long) n1 : n1 - (long) nHigh;
+		long tHigh = nInc > 0 ? nHigh - (long) n1 : n1 - (long) nLow;
+
+		if (hn == 0) {
+			if (tLow > 0 || tHigh < 0) {
+				return 0;
+			}
+		} else {
+			tLow = Math.max(tLow, 0);
+			tHigh = Math.min(tHigh, hn);
+			first = Math.max(first, Math.floorDiv(2 * hm * (tLow - 1) + hm,
+					2 * hn) + 1);
+			last = Math.min(last, Math.floorDiv(2 * hm * tHigh + hm, 2 * hn));
+		}
+		if (first > last) {
+			return 0;
+		}
+
+		long tFirst = -Math.floorDiv(hm - 2 * first * hn, 2 * hm);
+		long tLast = -Math.floorDiv(hm - 2 * last * hn, 2 * hm);
+		int mFirst = (int) (m1 + mInc * first);
+		int nFirst = (int) (n1 + nInc * tFirst);
+		int mLast = (int) (m1 + mInc * last);
+		int nLast = (int) (n1 + nInc * tLast);
+
+		int x = xMajor ? mFirst : nFirst;
+		int row = canvas.height - 1 - (xMajor ? nFirst : mFirst);
+		int count = (int) (last - first + 1);
+
+		if (xMajor) {
+			markDirty(Math.min(mFirst, mLast), canvas.height - 1
+					- Math.max(nFirst, nLast), Math.max(mFirst, mLast),
+					canvas.height - 1 - Math.min(nFirst, nLast));
+		} else {
+			markDirty(Math.min(nFirst, nLast), canvas.height - 1
+					- Math.max(mFirst, mLast), Math.max(nFirst, nLast),
+					canvas.height - 1 - Math.min(mFirst, mLast));
+		}
+
+		if (hn == 0 && xMajor) {
+			canvas.fillSpan(row, Math.min(mFirst, mLast), Math.max(mFirst,
+					mLast) + 1, argb);
+			return count;
+		}
+
+		/* rows grow downwards while turtle coordinates grow upwards */
+		long c = 2 * hm;
+		long k = 2 * hn;
+		long d = 2 * first * hn - c * tFirst;
+
+		if (xMajor) {
+			canvas.drawLineRun(x, row, count, mInc, 0, 0, -nInc, d, hm, c, k,
+					argb);
+		} else {
+			canvas.drawLineRun(x, row, count, 0, -mInc, nInc, 0, d, hm, c, k,
+					argb);
+		}
+		return count;
+	}
+
+	public void forward(double n) {
+		if (recording != null) {
+			recording.forward(n);
+			return;
+		}
+		move(n);
+
+		Presenter.updateMovie(canvas);
+	}
+
+	public void setPos(double x, double y) {
+		if (recording != null) {
+			recording.setPos(x, y);
+			return;
+		}
+		setPosition(x, y);
+	}
+
+	public double getX() {
+		flush();
+		return x;
+	}
+
+	public double getY() {
+		flush();
+		return y;
+	}
+
+	/**
+	 * Sets the heading in degrees, counted counterclockwise from the positive
+	 * x-axis. Integer headings take the direction from a table, fractional
+	 * ones are computed exactly.
+	 *
+	 * @param angle
+	 *            the new heading in degrees
+	 */
+	public void setAngle(double angle) {
+		if (recording != null) {
+			recording.setAngle(angle);
+			return;
+		}
+		setHeading(angle);
+	}
+
+	public double getAngle() {
+		flush();
+		return angle;
+	}
+
+	public void stepWidth(int width) {
+		if (recording != null) {
+			recording.stepWidth(width);
+			return;
+		}
+		setStepWidth(width);
+	}
+
+	public void left(double angle) {
+		if (recording != null) {
+			recording.left(angle);
+			return;
+		}
+		turn(angle);
+	}
+
+	public void right(double angle) {
+		if (recording != null) {
+			recording.right(angle);
+			return;
+		}
+		turn(-angle);
+	}
+
+	public void setColor(Color color) {
+		this.color = color;
+		if (recording != null) {
+			recording.setColor(FrameBuffer.toARGB(color));
+			return;
+		}
+		setARGB(FrameBuffer.toARGB(color));
+	}
+
+	public Color getColor() {
+		return color;
+	}
+
+	public void penUp() {
+		if (recording != null) {
+			recording.penUp();
+			return;
+		}
+		setDrawing(false);
+	}
+
+	public void penDown() {
+		if (recording != null) {
+			recording.penDown();
+			return;
+		}
+		setDrawing(true);
+	}
+
+	public boolean isPenDown() {
+		flush();
+		return isDrawing;
+	}
+
+	/**
+	 * Sets the viewport of the turtle. The point (panX, panY) of the turtle
+	 * coordinate system is shown in the lower left corner of the canvas, and
+	 * one unit of the turtle coordinate system covers zoom pixels. The default
+	 * viewport is (0, 0) with a zoom of 1.
+	 *
+	 * @param panX
+	 *            the x-coordinate shown at the left border of the canvas
+	 * @param panY
+	 *            the y-coordinate shown at the bottom border of the canvas
+	 * @param zoom
+	 *            the number of pixels per unit
+	 */
+	public void setViewport(double panX, double panY, double zoom) {
+		if (!(zoom > 0)) {
+			throw new IllegalArgumentException("Illegal zoom " + zoom);
+		}
+		flush();
+		this.panX = panX;
+		this.panY = panY;
+		this.zoom = zoom;
+	}
+
+	public double getZoom() {
+		return zoom;
+	}
+
+	/**
+	 * Tells whether anything inside a rectangle of the turtle coordinate
+	 * system can become visible in the clip region of this turtle. Recursive
+	 * drawings use this to skip parts of a figure outside of the viewport.
+	 *
+	 * @param minX
+	 *            the left border of the rectangle
+	 * @param minY
+	 *            the bottom border of the rectangle
+	 * @param maxX
+	 *            the right border of the rectangle
+	 * @param maxY
+	 *            the top border of the rectangle
+	 * @return false if the rectangle is certainly invisible
+	 */
+	public boolean isVisible(double minX, double minY, double maxX,
+			double maxY) {
+		/* one extra pixel accounts for rounding to the pixel grid */
+		return (maxX - panX) * zoom + 1 >= clipX0
+				&& (minX - panX) * zoom - 1 <= clipX1 - 1
+				&& (maxY - panY) * zoom + 1 >= canvas.height - clipY1
+				&& (minY - panY) * zoom - 1 <= canvas.height - 1 - clipY0;
+	}
+
+	/**
+	 * Tells whether anything inside a circle of the turtle coordinate system
+	 * can become visible in the clip region of this turtle.
+	 *
+	 * @param centerX
+	 *            the x-coordinate of the center
+	 * @param centerY
+	 *            the y-coordinate of the center
+	 * @param radius
+	 *            the radius of the circle
+	 * @return false if the circle is certainly invisible
+	 */
+	public boolean isVisible(double centerX, double centerY, double radius) {
+		return isVisible(centerX - radius, centerY - radius, centerX + radius,
+				centerY + radius);
+	}
+
+	/**
+	 * Tells whether a length of the turtle coordinate system covers at least
+	 * one pixel in the current viewport. Details smaller than that can be
+	 * replaced by a single dot.
+	 *
+	 * @param length
+	 *            a length in turtle coordinates
+	 * @return true if the length covers one pixel or more
+	 */
+	public boolean isLargerThanPixel(double length) {
+		return length * zoom >= 1;
+	}
+
+	/**
+	 * Starts a filled shape. Every position the turtle reaches from now on,
+	 * by forward or setPos, becomes a corner of a polygon which is filled with
+	 * the current color by {@link #endFill()}. The outline is only drawn if
+	 * the pen is down.
+	 */
+	public void beginFill() {
+		if (recording != null) {
+			recording.beginFill();
+			return;
+		}
+		startFill();
+	}
+
+	/**
+	 * Fills the polygon collected since {@link #beginFill()}.
+	 */
+	public void endFill() {
+		if (recording != null) {
+			recording.endFill();
+			return;
+		}
+		finishFill();
+
+		Presenter.updateMovie(canvas);
+	}
+
+	/**
+	 * Fills a polygon given in turtle coordinates with the current color,
+	 * independent of the position and the pen of the turtle.
+	 *
+	 * @param xs
+	 *            the x-coordinates of the corners
+	 * @param ys
+	 *            the y-coordinates of the corners
+	 * @param n
+	 *            the number of corners
+	 */
+	public void fillPolygon(double[] xs, double[] ys, int n) {
+		flush();
+		double[] columns = new double[n];
+		double[] rows = new double[n];
+		for (int i = 0; i < n; i++) {
+			columns[i] = (xs[i] - panX) * zoom;
+			rows[i] = canvas.height - 1 - (ys[i] - panY) * zoom;
+		}
+		fillRows(columns, rows, n);
+
+		Presenter.updateMovie(canvas);
+	}
+
+	/**
+	 * Saves the position and the heading of the turtle on a stack.
+	 */
+	public void pushState() {
+		if (recording != null) {
+			recording.pushState();
+			return;
+		}
+		saveState();
+	}
+
+	/**
+	 * Moves the turtle back to the position and heading saved by the
+	 * matching {@link #pushState()} without drawing a line.
+	 *
+	 * @throws IllegalStateException
+	 *             if no state is saved
+	 */
+	public void popState() {
+		if (recording != null) {
+			recording.popState();
+			return;
+		}
+		restoreState();
+	}
+
+	/**
+	 * Switches the turtle into recording mode. From now on the commands
+	 * forward, left, right, setPos, setAngle, stepWidth, setColor, penUp,
+	 * penDown, beginFill, endFill, pushState and popState are appended to a
+	 * {@link TurtleProgram} instead of being drawn. The recorded commands are
+	 * drawn in batches by {@link #flush()}, which is also called by
+	 * showGraphics, showMovie, erase, setViewport and fillPolygon, by the
+	 * queries getX, getY, getAngle and isPenDown, so they always report the
+	 * current pose, and when recording is stopped. Drawing a batch does not
+	 * remove it from the program.
+	 */
+	public void startRecording() {
+		if (recording == null) {
+			recording = new TurtleProgram();
+			replayedCommands = 0;
+			replayedOperands = 0;
+		}
+	}
+
+	/**
+	 * Leaves the recording mode. The commands not drawn yet are drawn, and
+	 * the program of all commands recorded since startRecording is returned,
+	 * so that it can be replayed later on.
+	 *
+	 * @return the complete recorded program, null if the turtle was not
+	 *         recording
+	 */
+	public TurtleProgram stopRecording() {
+		flush();
+		TurtleProgram program = recording;
+		recording = null;
+		return program;
+	}
+
+	public boolean isRecording() {
+		return recording != null;
+	}
+
+	/**
+	 * Draws all commands recorded since the last flush in one pass. Does
+	 * nothing if the turtle is not recording.
+	 */
+	public void flush() {
+		if (recording != null && recording.size() > replayedCommands) {
+			recording.replay(this, 1.0, replayedCommands, replayedOperands);
+			replayedCommands = recording.size();
+			replayedOperands = recording.operandCount();
+		}
+	}
+
+	void move(double n) {
+		double xn = x + n * stepWidth * dirX;
+		double yn = y + n * stepWidth * dirY;
+
+		drawLine((int) Math.round((x - panX) * zoom), (int) Math
+				.round((y - panY) * zoom), (int) Math.round((xn - panX) * zoom),
+				(int) Math.round((yn - panY) * zoom));
+		x = xn;
+		y = yn;
+
+		if (filling) {
+			addCorner();
+		}
+	}
+
+	void turn(double angle) {
+		setHeading(this.angle + angle);
+	}
+
+	void setPosition(double x, double y) {
+		this.x = x;
+		this.y = y;
+
+		if (filling) {
+			addCorner();
+		}
+	}
+
+	void startFill() {
+		if (fillX == null) {
+			fillX = new double[16];
+			fillY = new double[16];
+		}
+		filling = true;
+		fillCount = 0;
+		addCorner();
+	}
+
+	void finishFill() {
+		if (filling) {
+			filling = false;
+			fillRows(fillX, fillY, fillCount);
+		}
+	}
+
+	/*
+	 * The corners are stored in canvas coordinates, rows counted from
+	 * the top.
+	 */
+	private void addCorner() {
+		if (fillCount == fillX.length) {
+			fillX = Arrays.copyOf(fillX, 2 * fillCount);
+			fillY = Arrays.copyOf(fillY, 2 * fillCount);
+		}
+		fillX[fillCount] = (x - panX) * zoom;
+		fillY[fillCount] = canvas.height - 1 - (y - panY) * zoom;
+		fillCount++;
+	}
+
+	private void fillRows(double[] xs, double[] rows, int n) {
+		if (n < 3) {
+			return;
+		}
+		if (filler == null) {
+			filler = new PolygonFiller();
+		}
+		if (filler.fill(canvas, xs, rows, n, argb, clipX0, clipY0, clipX1,
+				clipY1)) {
+			markDirty(filler.filledX0, filler.filledY0, filler.filledX1,
+					filler.filledY1);
+		}
+	}
+
+	void setHeading(double angle) {
+		this.angle = angle;
+
+		int degrees = (int) angle;
+		if (degrees == angle) {
+			int index = degrees % 360;
+			if (index < 0) {
+				index += 360;
+			}
+			dirX = COS[index];
+			dirY = SIN[index];
+		} else {
+			dirX = Math.cos(2.0 * Math.PI * angle / 360.0);
+			dirY = Math.sin(2.0 * Math.PI * angle / 360.0);
+		}
+	}
+
+	void saveState() {
+		if (states == null) {
+			states = new double[48];
+		} else if (stateCount == states.length) {
+			states = Arrays.copyOf(states, 2 * stateCount);
+		}
+		states[stateCount++] = x;
+		states[stateCount++] = y;
+		states[stateCount++] = angle;
+	}
+
+	void restoreState() {
+		if (stateCount == 0) {
+			throw new IllegalStateException("No saved turtle state");
+		}
+		stateCount -= 3;
+		setHeading(states[stateCount + 2]);
+		setPosition(states[stateCount], states[stateCount + 1]);
+	}
+
+	void setStepWidth(int width) {
+		this.stepWidth = width;
+	}
+
+	void setARGB(int argb) {
+		this.argb = argb;
+	}
+
+	void setDrawing(boolean isDrawing) {
+		this.isDrawing = isDrawing;
+	}
+
+	public PixelCanvas getCanvas() {
+		return canvas;
+	}
+
+	/**
+	 * Paints the clip region of the turtle white.
+	 */
+	public void erase() {
+		flush();
+		canvas.fillRect(clipX0, clipY0, clipX1, clipY1, 0xffffffff);
+	}
+
+	/*
+	 * Reports a rectangle in canvas coordinates to the dirty tracking of
+	 * the canvas, after cutting it to the clip region.
+	 */
+	private void markDirty(int x0, int y0, int x1, int y1) {
+		x0 = Math.max(x0, clipX0);
+		y0 = Math.max(y0, clipY0);
+		x1 = Math.min(x1, clipX1 - 1);
+		y1 = Math.min(y1, clipY1 - 1);
+		if (x0 <= x1 && y0 <= y1) {
+			canvas.markDirty(x0, y0, x1, y1);
+		}
+	}
+
+	public void showGraphics(String title) {
+		flush();
+		Presenter.viewImage(title, canvas);
+	}
+
+	/**
+	 * Shows the canvas as a movie. Changes of the canvas are presented at
+	 * the frame rate of the {@link Presenter}.
+	 *
+	 * @param title
+	 *            the title showing up in the title bar of the frame
+	 */
+	public void showMovie(String title) {
+		flush();
+		Presenter.viewMovie(title, canvas);
+	}
+
+	/**
+	 * Writes the canvas into a PNG or PPM file, depending on the extension of
+	 * the file name. Needs no display.
+	 *
+	 * @param fileName
+	 *            the path of the file to create
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void saveGraphics(String fileName) throws IOException {
+		flush();
+		ImageExporter.write(canvas, fileName);
+	}
+}
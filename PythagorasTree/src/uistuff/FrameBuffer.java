@@ -0,0 +1,131 @@
+package uistuff;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * A FrameBuffer holds the pixels of a drawing in one packed integer array.
+ * Every pixel is stored as a single ARGB value (alpha in the highest byte,
+ * followed by red, green and blue). The rows are stored one after another,
+ * the first row is the top row of the picture.
+ *
+ * @version 1.0
+ */
+public class FrameBuffer extends PixelCanvas {
+	final int[] pixels;
+
+	/**
+	 * Creates a new frame buffer. All pixels are initialized to zero.
+	 *
+	 * @param width
+	 *            the number of pixels per row
+	 * @param height
+	 *            the number of rows
+	 */
+	public FrameBuffer(int width, int height) {
+		super(width, height);
+		if ((long) width * height > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Frame buffer " + width + "x"
+					+ height + " is too large");
+		}
+		this.pixels = new int[width * height];
+	}
+
+	/**
+	 * Returns the backing array of the frame buffer. The pixel at (x, y) is
+	 * found at index y * getWidth() + x.
+	 *
+	 * @return the packed ARGB pixels
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * Returns an image of TYPE_INT_RGB which shares the pixel array of this
+	 * frame buffer. Drawing into the frame buffer changes the image without
+	 * any copy, the alpha byte of the pixels is ignored by the image.
+	 *
+	 * @return an image backed by the pixels of this frame buffer
+	 */
+	public BufferedImage asBufferedImage() {
+		int[] masks = { 0xff0000, 0xff00, 0xff };
+		DataBufferInt dataBuffer = new DataBufferInt(pixels, pixels.length);
+		WritableRaster raster = Raster.createPackedRaster(dataBuffer, width,
+				height, width, masks, null);
+		return new BufferedImage(new DirectColorModel(24, masks[0], masks[1],
+				masks[2]), raster, false, null);
+	}
+
+	public int getPixel(int x, int y) {
+		return pixels[y * width + x];
+	}
+
+	public void setPixel(int x, int y, int argb) {
+		pixels[y * width + x] = argb;
+	}
+
+	public void fillSpan(int y, int x0, int x1, int argb) {
+		Arrays.fill(pixels, y * width + x0, y * width + x1, argb);
+	}
+
+	public void getRow(int y, int x, int count, int[] destination, int offset) {
+		System.arraycopy(pixels, y * width + x, destination, offset, count);
+	}
+
+	/*
+	 * Fills the first row and copies it into the following ones, which is
+	 * faster than filling every row on its own.
+	 */
+	void fillRows(int x0, int y0, int x1, int y1, int argb) {
+		int first = y0 * width + x0;
+		int count = x1 - x0;
+		Arrays.fill(pixels, first, first + count, argb);
+		for (int index = first + width; index < y1 * width; index += width) {
+			System.arraycopy(pixels, first, pixels, index, count);
+		}
+	}
+
+	void drawLineRun(int x, int y, int count, int majorDx, int majorDy,
+			int minorDx, int minorDy, long d, long limit, long c, long k,
+			int argb) {
+		int[] pixels = this.pixels;
+		int index = y * width + x;
+		int majorStride = majorDy * width + majorDx;
+		int minorStride = minorDy * width + minorDx;
+
+		if (k == 0) {
+			for (int i = 0; i < count; i++, index += majorStride) {
+				pixels[index] = argb;
+			}
+			return;
+		}
+
+		for (int i = 0; i < count; i++) {
+			pixels[index] = argb;
+			index += majorStride;
+			d += k;
+			/* mask is -1 if d > limit, 0 otherwise */
+			long mask = (limit - d) >> 63;
+			index += minorStride & (int) mask;
+			d -= c & mask;
+		}
+	}
+
+	/**
+	 * Converts a color into the opaque packed representation used by the
+	 * frame buffer.
+	 *
+	 * @param color
+	 *            the color to convert
+	 * @return the packed ARGB value with an alpha of 255
+	 */
+	public static int toARGB(Color color) {
+		return 0xff000000 | color.getRGB();
+	}
+}
@@ -0,0 +1,247 @@
+package uistuff;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An ImageBatch loads a sequence of images concurrently and hands them out in
+ * the order of their file names. At most a fixed number of images, the
+ * window, are decoding or waiting to be taken at any time: the next file is
+ * submitted only when the consumer takes an image. So memory stays bounded
+ * even when the consumer is slower than the loaders.
+ *
+ * Batches are created by the grabBatch methods of {@link ImageGrabber}. A
+ * batch must be closed when it is not consumed up to its end, which cancels
+ * the pending loads and stops the threads of the batch.
+ *
+ * @version 1.0
+ */
+public class ImageBatch implements Iterator<ImageBatch.Item>, Closeable {
+	/**
+	 * One image of a batch together with its file name.
+	 */
+	public static class Item {
+		private final String fileName;
+
+		private final PackedRaster raster;
+
+		private final Throwable failure;
+
+		Item(String fileName, PackedRaster raster, Throwable failure) {
+			this.fileName = fileName;
+			this.raster = raster;
+			this.failure = failure;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		/**
+		 * Returns the pixels of the image.
+		 *
+		 * @return the raster loaded by ImageGrabber.grabPackedRGB
+		 * @throws IOException
+		 *             if the image could not be loaded
+		 */
+		public PackedRaster getRaster() throws IOException {
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else if (failure instanceof Error) {
+				throw (Error) failure;
+			} else if (failure != null) {
+				throw new IOException("Loading " + fileName + " failed",
+						failure);
+			}
+			return raster;
+		}
+	}
+
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+
+	private final Iterator<String> fileNames;
+
+	private final ExecutorService executor;
+
+	private final boolean ownExecutor;
+
+	private final int window;
+
+	/* the loads in flight, in the order of the file names */
+	private final ArrayDeque<String> pendingNames = new ArrayDeque<String>();
+
+	private final ArrayDeque<Future<PackedRaster>> pendingLoads = new ArrayDeque<Future<PackedRaster>>();
+
+	private boolean closed = false;
+
+	/**
+	 * Creates a batch loading on its own pool of daemon threads.
+	 *
+	 * @param fileNames
+	 *            the images to load, consumed lazily
+	 * @param concurrency
+	 *            the number of images decoded at the same time. The window
+	 *            is twice as large, so decoded images can queue while the
+	 *            consumer is busy.
+	 */
+	ImageBatch(Iterator<String> fileNames, int concurrency) {
+		this(fileNames, Executors.newFixedThreadPool(
+				checkedConcurrency(concurrency), new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "ImageBatch-"
+								+ threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}), 2 * concurrency, true);
+	}
+
+	/**
+	 * Creates a batch loading on a given executor, which is not shut down by
+	 * close.
+	 *
+	 * @param fileNames
+	 *            the images to load, consumed lazily
+	 * @param executor
+	 *            the executor running the loads
+	 * @param window
+	 *            the maximum number of images loading or waiting to be
+	 *            taken
+	 */
+	ImageBatch(Iterator<String> fileNames, ExecutorService executor,
+			int window) {
+		this(fileNames, executor, window, false);
+	}
+
+	private ImageBatch(Iterator<String> fileNames, ExecutorService executor,
+			int window, boolean ownExecutor) {
+		if (window < 1) {
+			throw new IllegalArgumentException("Illegal window " + window);
+		}
+		this.fileNames = fileNames;
+		this.executor = executor;
+		this.window = window;
+		this.ownExecutor = ownExecutor;
+		fill();
+	}
+
+	private static int checkedConcurrency(int concurrency) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("Illegal concurrency "
+					+ concurrency);
+		}
+		return concurrency;
+	}
+
+	private void fill() {
+		while (pendingLoads.size() < window && fileNames.hasNext()) {
+			final String fileName = fileNames.next();
+			pendingNames.add(fileName);
+			pendingLoads.add(executor.submit(new Callable<PackedRaster>() {
+				public PackedRaster call() throws IOException {
+					return ImageGrabber.ImageGrabberUtilities.loadRGB(
+							fileName, false);
+				}
+			}));
+		}
+	}
+
+	public synchronized boolean hasNext() {
+		if (pendingLoads.isEmpty() && !closed) {
+			close();
+		}
+		return !pendingLoads.isEmpty();
+	}
+
+	/**
+	 * Waits for the next image in the order of the file names. A failed load
+	 * is reported by {@link Item#getRaster()}, so one broken file does not
+	 * end the batch.
+	 *
+	 * @return the next image
+	 */
+	public Item next() {
+		String fileName;
+		Future<PackedRaster> load;
+
+		/* the lock is not held while waiting, so close is never blocked */
+		synchronized (this) {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			fileName = pendingNames.remove();
+			load = pendingLoads.remove();
+			fill();
+		}
+
+		try {
+			return new Item(fileName, load.get(), null);
+		} catch (ExecutionException e) {
+			return new Item(fileName, null, e.getCause());
+		} catch (CancellationException e) {
+			return new Item(fileName, null, new InterruptedIOException(
+					"Loading " + fileName + " cancelled"));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			return new Item(fileName, null, new InterruptedIOException(
+					"Loading " + fileName + " interrupted"));
+		}
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the remaining images as a sequential stream. Closing the
+	 * stream closes the batch.
+	 *
+	 * @return a stream of the images in the order of the file names
+	 */
+	public Stream<Item> stream() {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED
+						| Spliterator.NONNULL), false).onClose(new Runnable() {
+			public void run() {
+				close();
+			}
+		});
+	}
+
+	/**
+	 * Cancels the pending loads and shuts down the threads of the batch. An
+	 * executor passed by the caller is left running.
+	 */
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			for (Future<PackedRaster> load : pendingLoads) {
+				load.cancel(true);
+			}
+			pendingLoads.clear();
+			pendingNames.clear();
+			if (ownExecutor) {
+				executor.shutdownNow();
+			}
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package uistuff;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * An ImageCache keeps decoded images in memory, so the ImageGrabber does not
+ * decode an image again while it is cached. The cache is used by all grab
+ * methods loading whole images once it is installed with
+ * {@link ImageGrabber#setCache(ImageCache)}.
+ *
+ * Images are identified by their canonical path, the time of their last
+ * modification and the requested format, so a changed file is decoded anew.
+ * The cache is bounded by the bytes of the cached pixels and evicts the
+ * least recently used images first. When several threads request the same
+ * uncached image, only one of them decodes it and the others wait for the
+ * result. The grab methods always return copies, which the callers may
+ * modify.
+ *
+ * @version 1.0
+ */
+public class ImageCache implements ImageCacheMBean {
+	/* the formats of the cached images */
+	static final int RGB = 0;
+
+	static final int GRAY = 1;
+
+	private static class Key {
+		private final String path;
+
+		private final long lastModified;
+
+		private final int format;
+
+		Key(String path, long lastModified, int format) {
+			this.path = path;
+			this.lastModified = lastModified;
+			this.format = format;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return path.equals(other.path)
+					&& lastModified == other.lastModified
+					&& format == other.format;
+		}
+
+		public int hashCode() {
+			return (path.hashCode() * 31 + (int) (lastModified ^ lastModified >>> 32))
+					* 31 + format;
+		}
+	}
+
+	private static class Entry {
+		final FutureTask<Object> load;
+
+		/* zero while the image is being decoded */
+		long bytes = 0;
+
+		Entry(FutureTask<Object> load) {
+			this.load = load;
+		}
+	}
+
+	private final long maxBytes;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/* in access order, the eldest entry is the least recently used */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(
+			16, 0.75f, true);
+
+	private long sizeBytes = 0;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long evictions = 0;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maxBytes
+	 *            the maximum number of bytes of the cached pixels. Images
+	 *            larger than this are not cached at all.
+	 */
+	public ImageCache(long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("Illegal cache size "
+					+ maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the image in the given format, decoding it if it is not
+	 * cached. The image is shared with the cache and must not be modified.
+	 */
+	Object get(final String fileName, final int format)
+			throws IOException {
+		File file = new File(fileName);
+		Key key = new Key(file.getCanonicalPath(), file.lastModified(), format);
+		Entry entry;
+		boolean loader = false;
+
+		lock.lock();
+		try {
+			entry = entries.get(key);
+			if (entry != null) {
+				hits++;
+			} else {
+				misses++;
+				entry = new Entry(new FutureTask<Object>(new Callable<Object>() {
+					public Object call() throws IOException {
+						return ImageGrabber.ImageGrabberUtilities.decode(
+								fileName, format);
+					}
+				}));
+				entries.put(key, entry);
+				loader = true;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		if (loader) {
+			/* decoded by this thread, outside of the lock */
+			entry.load.run();
+			loaded(key, entry);
+		}
+
+		try {
+			return entry.load.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Waiting for "
+					+ fileName + " interrupted");
+		}
+	}
+
+	/*
+	 * Accounts for a finished decode and evicts the least recently used
+	 * images while the cache is too large. Failed decodes are dropped, so the
+	 * next request tries again.
+	 */
+	private void loaded(Key key, Entry entry) {
+		long bytes = 0;
+		try {
+			Object image = entry.load.get();
+			if (image instanceof PackedRaster) {
+				bytes = 4L * ((PackedRaster) image).getPixels().length;
+			} else {
+				bytes = ((PlanarRaster) image).getSamples().length;
+			}
+		} catch (ExecutionException e) {
+			bytes = -1;
+		} catch (InterruptedException e) {
+			/* cannot happen, the load has been run by this thread */
+			Thread.currentThread().interrupt();
+			bytes = -1;
+		}
+
+		lock.lock();
+		try {
+			if (entries.get(key) != entry) {
+				/* removed by clear() in the meantime */
+				return;
+			}
+			if (bytes < 0 || bytes > maxBytes) {
+				entries.remove(key);
+				return;
+			}
+			entry.bytes = bytes;
+			sizeBytes += bytes;
+
+			Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet()
+					.iterator();
+			while (sizeBytes > maxBytes && eldest.hasNext()) {
+				Entry candidate = eldest.next().getValue();
+				if (candidate != entry && candidate.bytes > 0) {
+					eldest.remove();
+					sizeBytes -= candidate.bytes;
+					evictions++;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getHits() {
+		lock.lock();
+		try {
+			return hits;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getMisses() {
+		lock.lock();
+		try {
+			return misses;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getEvictions() {
+		lock.lock();
+		try {
+			return evictions;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getEntries() {
+		lock.lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getSizeBytes() {
+		lock.lock();
+		try {
+			return sizeBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Removes all images. Decodes in progress complete for their callers but
+	 * are not cached. The counters are kept.
+	 */
+	public void clear() {
+		lock.lock();
+		try {
+			entries.clear();
+			sizeBytes = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Registers this cache with the platform MBean server as
+	 * uistuff:type=ImageCache.
+	 *
+	 * @throws IllegalStateException
+	 *             if the registration fails, e.g. because another cache is
+	 *             registered
+	 */
+	public void register() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+					new ObjectName("uistuff:type=ImageCache"));
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register image cache", e);
+		}
+	}
+}
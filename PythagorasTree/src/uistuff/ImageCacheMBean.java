@@ -0,0 +1,23 @@
+package uistuff;
+
+/**
+ * Management interface of an {@link ImageCache}, registered as
+ * uistuff:type=ImageCache.
+ *
+ * @version 1.0
+ */
+public interface ImageCacheMBean {
+	long getHits();
+
+	long getMisses();
+
+	long getEvictions();
+
+	int getEntries();
+
+	long getSizeBytes();
+
+	long getMaxBytes();
+
+	void clear();
+}
@@ -0,0 +1,258 @@
+package uistuff;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * This class provides static methods to write the content of a canvas, or of
+ * a rectangular part of it, into PNG or binary PPM files. The pixels are
+ * streamed row by row out of the canvas, so no copy of the whole picture is
+ * created and canvases larger than the heap can be written. The methods use
+ * neither AWT nor the Toolkit and therefore work with java.awt.headless=true.
+ *
+ * @version 1.0
+ */
+public class ImageExporter {
+	private static final byte[] PNG_SIGNATURE = { (byte) 137, 80, 78, 71, 13,
+			10, 26, 10 };
+
+	/*
+	 * Collects the compressed image data and writes it as a sequence of IDAT
+	 * chunks.
+	 */
+	private static class ChunkOutputStream extends OutputStream {
+		private final DataOutputStream out;
+
+		private final byte[] buffer = new byte[1 << 16];
+
+		private int count = 0;
+
+		ChunkOutputStream(DataOutputStream out) {
+			this.out = out;
+		}
+
+		public void write(int b) throws IOException {
+			if (count == buffer.length) {
+				flushChunk();
+			}
+			buffer[count++] = (byte) b;
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (count == buffer.length) {
+					flushChunk();
+				}
+				int n = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		void flushChunk() throws IOException {
+			if (count > 0) {
+				writeChunk(out, "IDAT", buffer, count);
+				count = 0;
+			}
+		}
+	}
+
+	private ImageExporter() {
+	}
+
+	/**
+	 * Writes the canvas into a file. The format is chosen by the extension of
+	 * the file name, which must be either ".png" or ".ppm".
+	 *
+	 * @param canvas
+	 *            the canvas to write
+	 * @param fileName
+	 *            the path of the file to create
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void write(PixelCanvas canvas, String fileName)
+			throws IOException {
+		String lowerCase = fileName.toLowerCase();
+		if (lowerCase.endsWith(".png")) {
+			writePNG(canvas, fileName);
+		} else if (lowerCase.endsWith(".ppm")) {
+			writePPM(canvas, fileName);
+		} else {
+			throw new IllegalArgumentException("Unknown image format of "
+					+ fileName);
+		}
+	}
+
+	public static void writePNG(PixelCanvas canvas, String fileName)
+			throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(
+				fileName));
+		try {
+			writePNG(canvas, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	public static void writePPM(PixelCanvas canvas, String fileName)
+			throws IOException {
+		if (canvas instanceof MappedCanvas) {
+			/* the mapped file already is a PPM image, copy it as it is */
+			FileOutputStream out = new FileOutputStream(fileName);
+			try {
+				((MappedCanvas) canvas).transferTo(out.getChannel());
+			} finally {
+				out.close();
+			}
+			return;
+		}
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(
+				fileName));
+		try {
+			writePPM(canvas, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	public static void writePNG(PixelCanvas canvas, OutputStream out)
+			throws IOException {
+		writePNG(canvas, 0, 0, canvas.getWidth(), canvas.getHeight(), out);
+	}
+
+	public static void writePPM(PixelCanvas canvas, OutputStream out)
+			throws IOException {
+		writePPM(canvas, 0, 0, canvas.getWidth(), canvas.getHeight(), out);
+	}
+
+	/**
+	 * Writes a rectangular part of the canvas as 8 bit RGB PNG image. The
+	 * stream is not closed.
+	 *
+	 * @param canvas
+	 *            the canvas to write
+	 * @param x
+	 *            the leftmost column of the part
+	 * @param y
+	 *            the topmost row of the part
+	 * @param width
+	 *            the width of the part
+	 * @param height
+	 *            the height of the part
+	 * @param out
+	 *            the stream receiving the PNG data
+	 * @throws IOException
+	 *             if writing to the stream fails
+	 */
+	public static void writePNG(PixelCanvas canvas, int x, int y, int width,
+			int height, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+
+		data.write(PNG_SIGNATURE);
+
+		byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8; /* bit depth */
+		header[9] = 2; /* color type RGB */
+		writeChunk(data, "IHDR", header, header.length);
+
+		ChunkOutputStream chunks = new ChunkOutputStream(data);
+		Deflater deflater = new Deflater();
+		try {
+			DeflaterOutputStream deflated = new DeflaterOutputStream(chunks,
+					deflater, 1 << 16);
+			int[] pixels = new int[width];
+			byte[] row = new byte[1 + 3 * width];
+			for (int i = 0; i < height; i++) {
+				/* row[0] stays 0, the filter type None */
+				canvas.getRow(y + i, x, width, pixels, 0);
+				packRow(pixels, width, row, 1);
+				deflated.write(row);
+			}
+			deflated.finish();
+			chunks.flushChunk();
+		} finally {
+			deflater.end();
+		}
+
+		writeChunk(data, "IEND", new byte[0], 0);
+		data.flush();
+	}
+
+	/**
+	 * Writes a rectangular part of the canvas as binary (P6) PPM image. The
+	 * stream is not closed.
+	 *
+	 * @param canvas
+	 *            the canvas to write
+	 * @param x
+	 *            the leftmost column of the part
+	 * @param y
+	 *            the topmost row of the part
+	 * @param width
+	 *            the width of the part
+	 * @param height
+	 *            the height of the part
+	 * @param out
+	 *            the stream receiving the PPM data
+	 * @throws IOException
+	 *             if writing to the stream fails
+	 */
+	public static void writePPM(PixelCanvas canvas, int x, int y, int width,
+			int height, OutputStream out) throws IOException {
+		out.write(ppmHeader(width, height));
+
+		int[] pixels = new int[width];
+		byte[] row = new byte[3 * width];
+		for (int i = 0; i < height; i++) {
+			canvas.getRow(y + i, x, width, pixels, 0);
+			packRow(pixels, width, row, 0);
+			out.write(row);
+		}
+		out.flush();
+	}
+
+	static byte[] ppmHeader(int width, int height) throws IOException {
+		return ("P6\n" + width + " " + height + "\n255\n").getBytes("US-ASCII");
+	}
+
+	private static void packRow(int[] pixels, int width, byte[] row,
+			int offset) {
+		for (int i = 0; i < width; i++) {
+			int pixel = pixels[i];
+			row[offset++] = (byte) (pixel >> 16);
+			row[offset++] = (byte) (pixel >> 8);
+			row[offset++] = (byte) pixel;
+		}
+	}
+
+	private static void writeChunk(DataOutputStream out, String type,
+			byte[] data, int length) throws IOException {
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, 0, length);
+		out.writeInt((int) crc.getValue());
+	}
+
+	private static void putInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+}
@@ -1,11 +1,30 @@
 package uistuff;
 
-import java.awt.Image;
-import java.awt.Toolkit;
-import java.awt.image.ImageObserver;
-import java.awt.image.PixelGrabber;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * This class provides two static methods for grabbing pixel-information of
@@ -17,6 +36,16 @@ import java.io.FileNotFoundException;
  * pixels of the image and returns this information in a three-dimensional
  * array.
  * 
+ * The methods grabPackedRGB and grabPlanarRGB/grabPlanarGrayScale return the
+ * pixels as compact rasters instead, which cost a single array per image
+ * rather than one array per pixel.
+ * 
+ * The images are decoded by the ImageIO readers, so every format with an
+ * installed reader (PNG, JPEG, GIF, BMP, ...) can be grabbed, also in a
+ * headless environment. The grabBatch methods load many images concurrently,
+ * and an {@link ImageCache} installed by setCache avoids decoding the same
+ * image again.
+ * 
  * Two static methods for color-space conversion between the RGB and the YCrCb
  * colorspaces are also provided.
  * 
@@ -25,60 +54,9 @@ import java.io.FileNotFoundException;
  */
 public class ImageGrabber {
 	static class ImageGrabberUtilities {
-		private ImageByteArrayObserver imageObserver;
-		private Image image;
-		private int width;
-		private int height;
-
-		private class ImageByteArrayObserver implements ImageObserver {
-			private boolean errored = false;
-			private ImageGrabberUtilities igu = null;
-
-			public ImageByteArrayObserver(ImageGrabberUtilities mioi) {
-				igu = mioi;
-			}
-
-			public boolean imageUpdate(Image img, int infoflags, int x, int y,
-					int width, int height) {
-
-				if ((infoflags & (ERROR)) != 0) {
-					errored = true;
-				}
-				if ((infoflags & (WIDTH | HEIGHT)) != 0) {
-					if (igu != null) {
-						igu.sizeKnown();
-					}
-				}
-				boolean done = ((infoflags & (ERROR | FRAMEBITS | ALLBITS)) != 0);
-
-				return !done;
-			}
-
-			public boolean isErrored() {
-				return errored;
-			}
-		}
-
-		
 		private ImageGrabberUtilities() {
 		}
 
-		
-		private static int[] convertToRGB(int pixel) {
-			int[] RGB = new int[3];
-			// Alpha = (pixel >> 24) & 0xff;
-			RGB[0] = (int) ((pixel >> 16) & 0xff);
-			RGB[1] = (int) ((pixel >> 8) & 0xff);
-			RGB[2] = (int) ((pixel) & 0xff);
-
-			return RGB;
-		}
-
-		private static double[] convertToYCbCr(int pixel) {
-			int[] rgb = convertToRGB(pixel);
-			return convertRGBToYCbCr(rgb[0], rgb[1], rgb[2]);
-		}
-
 		/**
 		 * Transforms the YCbCr color-space into the RGB color-space
 		 * 
@@ -137,71 +115,248 @@ public class ImageGrabber {
 			return YCbCr;
 		}
 
-		private int[] grabPixels() throws InterruptedException {
-			int[] pixels = null;
-
-			width = image.getWidth(imageObserver);
-			height = image.getHeight(imageObserver);
+		/*
+		 * A reader only accepts destinations of the types it offers, PNG for
+		 * example offers TYPE_INT_RGB for all 8 bit RGB images.
+		 */
+		private static boolean decodesToIntRGB(ImageReader reader)
+				throws IOException {
+			for (Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0); types
+					.hasNext();) {
+				if (types.next().getBufferedImageType() == BufferedImage.TYPE_INT_RGB) {
+					return true;
+				}
+			}
+			return false;
+		}
 
-			if (width != -1 && height != -1) {
-				pixels = new int[width * height];
+		/*
+		 * Converts a decoded image into ARGB pixels. The types JPEG, BMP and
+		 * gray-scale PNG decode into are read from their sample arrays, all
+		 * others are converted by the color model of the image. Gray values
+		 * are replicated unchanged, as the former Toolkit loader did, whereas
+		 * getRGB would convert them from the linear gray color space.
+		 */
+		private static void copyPixels(BufferedImage image, int[] pixels) {
+			int width = image.getWidth();
+			int height = image.getHeight();
+			WritableRaster raster = image.getRaster();
+
+			if ((image.getType() == BufferedImage.TYPE_3BYTE_BGR || image
+					.getType() == BufferedImage.TYPE_BYTE_GRAY)
+					&& raster.getParent() == null) {
+				ComponentSampleModel sampleModel = (ComponentSampleModel) raster
+						.getSampleModel();
+				byte[] samples = ((DataBufferByte) raster.getDataBuffer())
+						.getData();
+				int pixelStride = sampleModel.getPixelStride();
+				int scanlineStride = sampleModel.getScanlineStride();
+				int[] offsets = sampleModel.getBandOffsets();
+				int red = offsets[0];
+				int green = offsets[offsets.length == 3 ? 1 : 0];
+				int blue = offsets[offsets.length == 3 ? 2 : 0];
+				int index = 0;
+
+				for (int y = 0; y < height; y++) {
+					int sample = y * scanlineStride;
+					for (int x = 0; x < width; x++) {
+						pixels[index++] = 255 << 24
+								| (samples[sample + red] & 0xff) << 16
+								| (samples[sample + green] & 0xff) << 8
+								| (samples[sample + blue] & 0xff);
+						sample += pixelStride;
+					}
+				}
+			} else if (image.getType() == BufferedImage.TYPE_USHORT_GRAY
+					&& raster.getParent() == null) {
+				ComponentSampleModel sampleModel = (ComponentSampleModel) raster
+						.getSampleModel();
+				short[] samples = ((DataBufferUShort) raster.getDataBuffer())
+						.getData();
+				int scanlineStride = sampleModel.getScanlineStride();
+				int index = 0;
+
+				for (int y = 0; y < height; y++) {
+					int sample = y * scanlineStride;
+					for (int x = 0; x < width; x++) {
+						int g = (samples[sample++] & 0xffff) >> 8;
+						pixels[index++] = 255 << 24 | g << 16 | g << 8 | g;
+					}
+				}
+			} else {
+				image.getRGB(0, 0, width, height, pixels, 0, width);
+			}
+		}
 
-				PixelGrabber pg = new PixelGrabber(image, 0, 0, width, height,
-						pixels, 0, width);
+		/*
+		 * Decodes the image with the first ImageIO reader accepting the file.
+		 * If the reader can decode into TYPE_INT_RGB, the pixels are written
+		 * straight into the array of the returned raster. Otherwise the image
+		 * is decoded in its own format and converted into the raster.
+		 */
+		static PackedRaster loadImage(String path, Rectangle region,
+				int subsampling) throws IOException {
+			File f = new File(path);
 
-				pg.grabPixels();
+			if (!f.exists()) {
+				String wd = "";
+				if (path.charAt(0) != System.getProperty("file.separator")
+						.charAt(0)) {
+					wd = System.getProperty("user.dir")
+							+ System.getProperty("file.separator").charAt(0);
+				}
+				throw new FileNotFoundException("File " + wd + path
+						+ " not found");
+			}
+			if (subsampling < 1) {
+				throw new IllegalArgumentException("Illegal subsampling "
+						+ subsampling);
+			}
 
-				if ((pg.getStatus() & ImageObserver.ABORT) != 0) {
-					if (imageObserver.isErrored()) {
-						throw new InterruptedException(
-								"Error in grabbing Pixels");
-					} else {
-						throw new InterruptedException(
-								"Grabbing Pixels aborted");
+			ImageInputStream in = ImageIO.createImageInputStream(f);
+			if (in == null) {
+				throw new IOException("Cannot open " + path);
+			}
+			ImageReader reader = null;
+			try {
+				Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+				if (!readers.hasNext()) {
+					throw new IOException("No decoder for " + path);
+				}
+				reader = readers.next();
+				reader.setInput(in, false, true);
+
+				Rectangle source = new Rectangle(0, 0, reader.getWidth(0),
+						reader.getHeight(0));
+				if (region != null) {
+					source = source.intersection(region);
+					if (source.isEmpty()) {
+						throw new IllegalArgumentException("Region " + region
+								+ " lies outside of " + path);
 					}
 				}
+				int width = (source.width + subsampling - 1) / subsampling;
+				int height = (source.height + subsampling - 1) / subsampling;
+
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceRegion(source);
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+				if (decodesToIntRGB(reader)) {
+					BufferedImage destination = new BufferedImage(width,
+							height, BufferedImage.TYPE_INT_RGB);
+					param.setDestination(destination);
+					reader.read(0, param);
+					int[] pixels = ((DataBufferInt) destination.getRaster()
+							.getDataBuffer()).getData();
+					/* TYPE_INT_RGB leaves the alpha byte zero */
+					for (int i = 0; i < pixels.length; i++) {
+						pixels[i] |= 0xff000000;
+					}
+					return new PackedRaster(pixels, 0, width, width, height);
+				}
+
+				BufferedImage image = reader.read(0, param);
+				PackedRaster raster = new PackedRaster(image.getWidth(), image
+						.getHeight());
+				copyPixels(image, raster.getPixels());
+				return raster;
+			} finally {
+				if (reader != null) {
+					reader.dispose();
+				}
+				in.close();
 			}
+		}
 
-			return pixels;
+		/*
+		 * Decodes a whole image in one of the formats of the ImageCache.
+		 */
+		static Object decode(String path, int format) throws IOException {
+			PackedRaster raster = loadImage(path, null, 1);
+			if (format == ImageCache.GRAY) {
+				return ColorConverter.toGrayScale(raster, new PlanarRaster(
+						raster.getWidth(), raster.getHeight(),
+						PlanarRaster.GRAY));
+			}
+			return raster;
 		}
 
-		private int getWidth() {
-			return width;
+		/*
+		 * Loads a whole image through the cache if one is installed. A shared
+		 * raster may belong to the cache and must only be read, otherwise the
+		 * caller receives its own copy.
+		 */
+		static PackedRaster loadRGB(String path, boolean shared)
+				throws IOException {
+			ImageCache imageCache = cache;
+			if (imageCache == null) {
+				return loadImage(path, null, 1);
+			}
+			PackedRaster raster = (PackedRaster) imageCache.get(path,
+					ImageCache.RGB);
+			return shared ? raster : raster.copy();
 		}
 
-		private int getHeight() {
-			return height;
+		static PlanarRaster loadGrayScale(String path, boolean shared)
+				throws IOException {
+			ImageCache imageCache = cache;
+			if (imageCache == null) {
+				return (PlanarRaster) decode(path, ImageCache.GRAY);
+			}
+			PlanarRaster raster = (PlanarRaster) imageCache.get(path,
+					ImageCache.GRAY);
+			return shared ? raster : raster.copy();
 		}
 
-		synchronized private void sizeKnown() {
-			notify();
+		/*
+		 * The methods grabbing whole images report decoding errors as
+		 * InterruptedException, like the former PixelGrabber based loader.
+		 */
+		static InterruptedException grabError(IOException e) {
+			InterruptedException ie = new InterruptedException(
+					"Error in grabbing Pixels: " + e.getMessage());
+			ie.initCause(e);
+			return ie;
 		}
+	}
 
-		synchronized private int[] loadImage(String path)
-				throws InterruptedException, FileNotFoundException {
-			int[] pixels = null;
+	private static volatile ImageCache cache = null;
 
-			File f = new File(path);
+	/**
+	 * Installs a cache of decoded images used by all methods grabbing whole
+	 * images, including the batches. No cache is installed by default.
+	 * 
+	 * @param cache
+	 *            the cache to use, null to decode every image anew
+	 */
+	public static void setCache(ImageCache cache) {
+		ImageGrabber.cache = cache;
+	}
 
-			if (f.exists()) {
-				image = Toolkit.getDefaultToolkit().createImage(path);
-				imageObserver = new ImageByteArrayObserver(this);
-				Toolkit.getDefaultToolkit().prepareImage(image, -1, -1,
-						imageObserver);
-				wait();
-				pixels = grabPixels();
-			} else {
-				String wd = "";
-				if (path.charAt(0) != System.getProperty("file.separator")
-						.charAt(0)) {
-					wd = System.getProperty("user.dir")
-							+ System.getProperty("file.separator").charAt(0);
-				}
-				throw new FileNotFoundException("File " + wd + path
-						+ " not found");
-			}
+	public static ImageCache getCache() {
+		return cache;
+	}
+
+	private static PackedRaster loadRGB(String fileName, boolean shared)
+			throws FileNotFoundException, InterruptedException {
+		try {
+			return ImageGrabberUtilities.loadRGB(fileName, shared);
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			throw ImageGrabberUtilities.grabError(e);
+		}
+	}
 
-			return pixels;
+	private static PlanarRaster loadGrayScale(String fileName, boolean shared)
+			throws FileNotFoundException, InterruptedException {
+		try {
+			return ImageGrabberUtilities.loadGrayScale(fileName, shared);
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			throw ImageGrabberUtilities.grabError(e);
 		}
 	}
 
@@ -222,23 +377,94 @@ public class ImageGrabber {
 	 */
 	public static int[][][] grabRGB(String fileName) throws FileNotFoundException,
 			InterruptedException {
-		ImageGrabberUtilities igu = new ImageGrabberUtilities();
+		return loadRGB(fileName, true).toRGB();
+	}
+
+	/**
+	 * This method reads a image and provides its pixels as packed ARGB values.
+	 * The raster wraps the array the pixels have been grabbed into, so no
+	 * further copy is made.
+	 * 
+	 * @param fileName
+	 *            the path to the image-source used for grabbing
+	 * @return a raster of the pixels with a stride equal to the width
+	 * @throws FileNotFoundException
+	 *             if the image specified in the path-argument does not exist.
+	 * @throws InterruptedException
+	 *             if the grabb-process is interrupted unexpectedly.
+	 */
+	public static PackedRaster grabPackedRGB(String fileName)
+			throws FileNotFoundException, InterruptedException {
+		return loadRGB(fileName, false);
+	}
+
+	/**
+	 * This method reads a rectangular region of a image, optionally taking
+	 * only every n-th pixel of every n-th row. Only the requested pixels are
+	 * decoded where the image format allows it, which makes thumbnails and
+	 * crops of large images cheap.
+	 * 
+	 * @param fileName
+	 *            the path to the image-source used for grabbing
+	 * @param region
+	 *            the region to read, null for the whole image. The region is
+	 *            clipped to the image.
+	 * @param subsampling
+	 *            1 to read every pixel, n to read every n-th pixel of every
+	 *            n-th row starting with the top left pixel of the region
+	 * @return a raster of the pixels with a stride equal to the width
+	 * @throws FileNotFoundException
+	 *             if the image specified in the path-argument does not exist.
+	 * @throws IOException
+	 *             if the image cannot be decoded
+	 */
+	public static PackedRaster grabPackedRGB(String fileName,
+			Rectangle region, int subsampling) throws IOException {
+		return ImageGrabberUtilities.loadImage(fileName, region, subsampling);
+	}
 
-		int[] pixels = igu.loadImage(fileName);
+	/**
+	 * This method reads a image and provides its color-components in three
+	 * byte planes.
+	 * 
+	 * @param fileName
+	 *            the path to the image-source used for grabbing
+	 * @return a raster with the planes red = 0; green = 1; blue = 2
+	 * @throws FileNotFoundException
+	 *             if the image specified in the path-argument does not exist.
+	 * @throws InterruptedException
+	 *             if the grabb-process is interrupted unexpectedly.
+	 */
+	public static PlanarRaster grabPlanarRGB(String fileName)
+			throws FileNotFoundException, InterruptedException {
+		PackedRaster packed = loadRGB(fileName, true);
 
-		int w = igu.getWidth();
-		int h = igu.getHeight();
+		int w = packed.getWidth();
+		int h = packed.getHeight();
 
-		int[][][] rgb = new int[h][w][];
+		PlanarRaster raster = new PlanarRaster(w, h, PlanarRaster.RGB);
+		int plane = raster.getPlaneSize();
+		PixelKernels.get().unpack(packed.getPixels(), 0, raster.getSamples(),
+				0, plane, 2 * plane, w * h);
 
-		for (int y = 0; y < h; y++) {
-			for (int x = 0; x < w; x++) {
-				rgb[y][x] = ImageGrabberUtilities
-						.convertToRGB(pixels[y * w + x]);
-			}
-		}
+		return raster;
+	}
 
-		return rgb;
+	/**
+	 * This method reads a image, converts it into gray-scale and provides this
+	 * information in a single byte plane.
+	 * 
+	 * @param fileName
+	 *            the path to the image-source used for grabbing
+	 * @return a raster with one gray-scale plane
+	 * @throws FileNotFoundException
+	 *             if the image specified in the path-argument does not exist.
+	 * @throws InterruptedException
+	 *             if the grabb-process is interrupted unexpectedly.
+	 */
+	public static PlanarRaster grabPlanarGrayScale(String fileName)
+			throws FileNotFoundException, InterruptedException {
+		return loadGrayScale(fileName, false);
 	}
 
 	/**
@@ -257,22 +483,77 @@ public class ImageGrabber {
 	 */
 	public static int[][] grabGrayScale(String fileName)
 			throws FileNotFoundException, InterruptedException {
-		ImageGrabberUtilities igu = new ImageGrabberUtilities();
-
-		int[] pixels = igu.loadImage(fileName);
+		return loadGrayScale(fileName, true).toGrayScale();
+	}
 
-		int w = igu.getWidth();
-		int h = igu.getHeight();
+	/**
+	 * This method loads many images concurrently on a pool of daemon
+	 * threads. The images are returned in the order of the file names, and
+	 * at most twice the concurrency of them are held in memory until the
+	 * caller takes them.
+	 * 
+	 * @param fileNames
+	 *            the paths to the images, consumed lazily, e.g. the iterator
+	 *            of a stream
+	 * @param concurrency
+	 *            the number of images decoded at the same time
+	 * @return the batch delivering the images, which must be closed if it
+	 *         is not consumed up to its end
+	 */
+	public static ImageBatch grabBatch(Iterator<String> fileNames,
+			int concurrency) {
+		return new ImageBatch(fileNames, concurrency);
+	}
 
-		int[][] grayScale = new int[h][w];
+	/**
+	 * This method loads many images concurrently on the given executor. The
+	 * images are returned in the order of the file names.
+	 * 
+	 * @param fileNames
+	 *            the paths to the images, consumed lazily
+	 * @param executor
+	 *            the executor running the loads, it is not shut down by the
+	 *            batch
+	 * @param window
+	 *            the maximum number of images loading or waiting to be taken
+	 * @return the batch delivering the images, which must be closed if it
+	 *         is not consumed up to its end
+	 */
+	public static ImageBatch grabBatch(Iterator<String> fileNames,
+			ExecutorService executor, int window) {
+		return new ImageBatch(fileNames, executor, window);
+	}
 
-		for (int y = 0; y < h; y++) {
-			for (int x = 0; x < w; x++) {
-				grayScale[y][x] = (int) (256 * ImageGrabberUtilities
-						.convertToYCbCr(pixels[y * w + x])[0]);
+	/**
+	 * This method loads all images of a directory whose names match a glob
+	 * pattern, e.g. "*.{png,jpg}", in the order of their names.
+	 * 
+	 * @param directory
+	 *            the directory containing the images
+	 * @param glob
+	 *            the pattern of the file names
+	 * @param concurrency
+	 *            the number of images decoded at the same time
+	 * @return the batch delivering the images, which must be closed if it
+	 *         is not consumed up to its end
+	 * @throws IOException
+	 *             if the directory cannot be read
+	 */
+	public static ImageBatch grabBatch(String directory, String glob,
+			int concurrency) throws IOException {
+		List<String> fileNames = new ArrayList<String>();
+		DirectoryStream<Path> entries = Files.newDirectoryStream(Paths
+				.get(directory), glob);
+		try {
+			for (Path entry : entries) {
+				if (Files.isRegularFile(entry)) {
+					fileNames.add(entry.toString());
+				}
 			}
+		} finally {
+			entries.close();
 		}
-
-		return grayScale;
+		Collections.sort(fileNames);
+		return grabBatch(fileNames.iterator(), concurrency);
 	}
 }
@@ -0,0 +1,209 @@
+package uistuff;
+
+import java.util.Arrays;
+
+/**
+ * An LSystem draws the figure described by an axiom, a set of production
+ * rules and a number of iterations with a turtle. The symbols are
+ * interpreted as follows:
+ * <ul>
+ * <li>F and G move forward one step and draw a line</li>
+ * <li>f moves forward one step without drawing</li>
+ * <li>+ turns left, - turns right by the angle of the system</li>
+ * <li>[ saves the position and heading of the turtle, ] restores them</li>
+ * </ul>
+ * All other symbols are only used by the rules and do not draw anything.
+ *
+ * The expanded string is never built. The rules are expanded depth first
+ * while the symbols are drawn, keeping one position per iteration on an
+ * explicit stack, so the memory needed grows with the number of iterations
+ * only, not with the length of the expanded string.
+ *
+ * @version 1.0
+ */
+public class LSystem {
+	private final String axiom;
+
+	/*
+	 * The replacement of every symbol, null if the symbol is a constant. The
+	 * table only reaches up to the largest symbol with a rule, symbols beyond
+	 * it are constants.
+	 */
+	private String[] rules = new String[0];
+
+	private double angle = 90;
+
+	private double step = 1;
+
+	/**
+	 * Creates an L-system without any rules.
+	 *
+	 * @param axiom
+	 *            the symbols to start with
+	 */
+	public LSystem(String axiom) {
+		this.axiom = axiom;
+	}
+
+	/**
+	 * Adds a production rule. An existing rule of the symbol is replaced.
+	 *
+	 * @param symbol
+	 *            the symbol to replace
+	 * @param replacement
+	 *            the symbols replacing it in every iteration
+	 */
+	public void addRule(char symbol, String replacement) {
+		if (symbol >= rules.length) {
+			rules = Arrays.copyOf(rules, symbol + 1);
+		}
+		rules[symbol] = replacement;
+	}
+
+	/**
+	 * Sets the angle the symbols + and - turn the turtle.
+	 *
+	 * @param angle
+	 *            the angle in degrees
+	 */
+	public void setAngle(double angle) {
+		this.angle = angle;
+	}
+
+	/**
+	 * Sets the distance the symbols F, G and f move the turtle.
+	 *
+	 * @param step
+	 *            the distance in turtle steps
+	 */
+	public void setStep(double step) {
+		this.step = step;
+	}
+
+	/**
+	 * Draws the figure with the turtle of {@link Turtle}.
+	 *
+	 * @param iterations
+	 *            the number of times the rules are applied
+	 */
+	public void draw(int iterations) {
+		draw(Turtle.getTurtle(), iterations);
+	}
+
+	/**
+	 * Draws the figure starting at the current position and heading of the
+	 * turtle.
+	 *
+	 * @param turtle
+	 *            the turtle drawing the figure
+	 * @param iterations
+	 *            the number of times the rules are applied
+	 */
+	public void draw(DrawingTurtle turtle, int iterations) {
+		if (iterations < 0) {
+			throw new IllegalArgumentException("Illegal iteration count "
+					+ iterations);
+		}
+
+		/*
+		 * Entry i of the stack is a string being expanded with i iterations
+		 * left and the position of its next symbol.
+		 */
+		String[] strings = new String[iterations + 1];
+		int[] positions = new int[iterations + 1];
+		int top = iterations;
+		strings[top] = axiom;
+		positions[top] = 0;
+
+		/*
+		 * No symbol changes the pen, so it is queried once. Querying it per
+		 * symbol would flush a recording turtle every time.
+		 */
+		boolean penDown = turtle.isPenDown();
+
+		String[] rules = this.rules;
+		while (top <= iterations) {
+			String string = strings[top];
+			if (positions[top] == string.length()) {
+				top++;
+				continue;
+			}
+			char symbol = string.charAt(positions[top]++);
+			if (top > 0 && symbol < rules.length && rules[symbol] != null) {
+				top--;
+				strings[top] = rules[symbol];
+				positions[top] = 0;
+			} else {
+				execute(turtle, symbol, penDown);
+			}
+		}
+	}
+
+	/**
+	 * Counts the symbols of the fully expanded string without building it.
+	 *
+	 * @param iterations
+	 *            the number of times the rules are applied
+	 * @return the length of the expanded string
+	 */
+	public long length(int iterations) {
+		/* only the symbols of the rule table can have a length other than 1 */
+		long[] lengths = new long[rules.length];
+		long[] next = new long[rules.length];
+		Arrays.fill(lengths, 1);
+		Arrays.fill(next, 1);
+		for (int i = 0; i < iterations; i++) {
+			for (int c = 0; c < rules.length; c++) {
+				if (rules[c] != null) {
+					next[c] = length(rules[c], lengths);
+				}
+			}
+			long[] swap = lengths;
+			lengths = next;
+			next = swap;
+		}
+		return length(axiom, lengths);
+	}
+
+	private static long length(String string, long[] lengths) {
+		long length = 0;
+		for (int i = 0; i < string.length(); i++) {
+			char symbol = string.charAt(i);
+			length += symbol < lengths.length ? lengths[symbol] : 1;
+		}
+		return length;
+	}
+
+	private void execute(DrawingTurtle turtle, char symbol, boolean penDown) {
+		switch (symbol) {
+		case 'F':
+		case 'G':
+			turtle.forward(step);
+			break;
+		case 'f':
+			if (penDown) {
+				turtle.penUp();
+				turtle.forward(step);
+				turtle.penDown();
+			} else {
+				turtle.forward(step);
+			}
+			break;
+		case '+':
+			turtle.left(angle);
+			break;
+		case '-':
+			turtle.right(angle);
+			break;
+		case '[':
+			turtle.pushState();
+			break;
+		case ']':
+			turtle.popState();
+			break;
+		default:
+			/* symbols without a drawing command are skipped */
+			break;
+		}
+	}
+}
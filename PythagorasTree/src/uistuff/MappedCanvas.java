@@ -0,0 +1,186 @@
+package uistuff;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A MappedCanvas keeps its pixels outside of the heap in a memory mapped
+ * file. The file is a binary (P6) PPM image, a short text header followed by
+ * three bytes red, green and blue per pixel, so it can be viewed or copied
+ * as it is while the canvas is open and after it has been closed. The
+ * operating system pages the pixels in and out as needed, which allows dense
+ * canvases of many gigabytes in a small heap.
+ *
+ * The file is mapped in segments of whole rows of at most 1 GB each. The
+ * alpha byte of the pixels is not stored, all pixels read back as opaque.
+ * Disjoint regions of the canvas may be drawn by several threads at once.
+ *
+ * @version 1.0
+ */
+public class MappedCanvas extends PixelCanvas implements Closeable {
+	private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer[] segments;
+
+	private final int rowsPerSegment;
+
+	private final int rowBytes;
+
+	private final long headerLength;
+
+	/**
+	 * Creates a new canvas backed by the given file. An existing file is
+	 * overwritten. All pixels are initialized to black.
+	 *
+	 * @param fileName
+	 *            the path of the PPM file holding the pixels
+	 * @param width
+	 *            the number of pixels per row
+	 * @param height
+	 *            the number of rows
+	 * @throws IOException
+	 *             if the file cannot be created or mapped
+	 */
+	public MappedCanvas(String fileName, int width, int height)
+			throws IOException {
+		super(width, height);
+		if (3L * width > MAX_SEGMENT_SIZE) {
+			throw new IllegalArgumentException("Mapped canvas " + width + "x"
+					+ height + " is too wide");
+		}
+		this.rowBytes = 3 * width;
+		this.rowsPerSegment = (int) Math.min(height, MAX_SEGMENT_SIZE
+				/ rowBytes);
+
+		byte[] header = ImageExporter.ppmHeader(width, height);
+		this.headerLength = header.length;
+
+		this.file = new RandomAccessFile(new File(fileName), "rw");
+		try {
+			file.setLength(0);
+			file.setLength(headerLength + (long) rowBytes * height);
+			file.write(header);
+			this.channel = file.getChannel();
+
+			int segmentCount = (height + rowsPerSegment - 1) / rowsPerSegment;
+			this.segments = new MappedByteBuffer[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+				segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+						headerLength + (long) i * rowsPerSegment * rowBytes,
+						(long) rows * rowBytes);
+			}
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	public int getPixel(int x, int y) {
+		MappedByteBuffer segment = segments[y / rowsPerSegment];
+		int index = (y % rowsPerSegment) * rowBytes + 3 * x;
+		return 0xff000000 | (segment.get(index) & 0xff) << 16
+				| (segment.get(index + 1) & 0xff) << 8
+				| (segment.get(index + 2) & 0xff);
+	}
+
+	public void setPixel(int x, int y, int argb) {
+		MappedByteBuffer segment = segments[y / rowsPerSegment];
+		int index = (y % rowsPerSegment) * rowBytes + 3 * x;
+		segment.put(index, (byte) (argb >> 16));
+		segment.put(index + 1, (byte) (argb >> 8));
+		segment.put(index + 2, (byte) argb);
+	}
+
+	public void fillSpan(int y, int x0, int x1, int argb) {
+		MappedByteBuffer segment = segments[y / rowsPerSegment];
+		int index = (y % rowsPerSegment) * rowBytes + 3 * x0;
+		int end = index + 3 * (x1 - x0);
+		byte r = (byte) (argb >> 16);
+		byte g = (byte) (argb >> 8);
+		byte b = (byte) argb;
+		while (index < end) {
+			segment.put(index++, r);
+			segment.put(index++, g);
+			segment.put(index++, b);
+		}
+	}
+
+	/*
+	 * Packs one row of the color and writes it into every row with a bulk
+	 * put.
+	 */
+	void fillRows(int x0, int y0, int x1, int y1, int argb) {
+		byte[] row = new byte[3 * (x1 - x0)];
+		for (int i = 0; i < row.length; i += 3) {
+			row[i] = (byte) (argb >> 16);
+			row[i + 1] = (byte) (argb >> 8);
+			row[i + 2] = (byte) argb;
+		}
+		for (int y = y0; y < y1; y++) {
+			segments[y / rowsPerSegment].put((y % rowsPerSegment) * rowBytes
+					+ 3 * x0, row, 0, row.length);
+		}
+	}
+
+	public void getRow(int y, int x, int count, int[] destination, int offset) {
+		MappedByteBuffer segment = segments[y / rowsPerSegment];
+		int index = (y % rowsPerSegment) * rowBytes + 3 * x;
+		for (int i = 0; i < count; i++, index += 3) {
+			destination[offset + i] = 0xff000000
+					| (segment.get(index) & 0xff) << 16
+					| (segment.get(index + 1) & 0xff) << 8
+					| (segment.get(index + 2) & 0xff);
+		}
+	}
+
+	/**
+	 * Writes all modified pixels back to the file.
+	 */
+	public void force() {
+		for (int i = 0; i < segments.length; i++) {
+			segments[i].force();
+		}
+	}
+
+	/**
+	 * Copies the whole file, which is a complete PPM image, to a channel. The
+	 * pixels are forced to the file first and then transferred by the
+	 * operating system without passing through the heap.
+	 *
+	 * @param target
+	 *            the channel receiving the PPM image
+	 * @throws IOException
+	 *             if reading the file or writing the channel fails
+	 */
+	public void transferTo(WritableByteChannel target) throws IOException {
+		force();
+		long size = channel.size();
+		long position = 0;
+		while (position < size) {
+			position += channel.transferTo(position, size - position, target);
+		}
+	}
+
+	/**
+	 * Forces the pixels to the file and closes it. The mapped segments stay
+	 * valid until they are garbage collected, but the canvas must not be
+	 * used anymore.
+	 *
+	 * @throws IOException
+	 *             if closing the file fails
+	 */
+	public void close() throws IOException {
+		force();
+		file.close();
+	}
+}
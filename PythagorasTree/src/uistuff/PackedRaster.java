@@ -0,0 +1,145 @@
+package uistuff;
+
+/**
+ * A PackedRaster holds the pixels of an image as packed ARGB values in a
+ * single integer array (alpha in the highest byte, followed by red, green and
+ * blue). The pixel at (x, y) is found at index offset + y * stride + x, so a
+ * raster may describe a window into a larger array.
+ *
+ * @version 1.0
+ */
+public class PackedRaster {
+	private final int[] pixels;
+
+	private final int offset;
+
+	private final int stride;
+
+	private final int width;
+
+	private final int height;
+
+	/**
+	 * Creates a raster with a new pixel array. All pixels are initialized to
+	 * zero.
+	 *
+	 * @param width
+	 *            the number of pixels per row
+	 * @param height
+	 *            the number of rows
+	 */
+	public PackedRaster(int width, int height) {
+		this(new int[checkedSize(width, height)], 0, width, width, height);
+	}
+
+	/**
+	 * Creates a raster on an existing pixel array.
+	 *
+	 * @param pixels
+	 *            the packed ARGB pixels
+	 * @param offset
+	 *            the index of the top left pixel
+	 * @param stride
+	 *            the distance between the first pixels of two adjacent rows
+	 * @param width
+	 *            the number of pixels per row
+	 * @param height
+	 *            the number of rows
+	 */
+	public PackedRaster(int[] pixels, int offset, int stride, int width,
+			int height) {
+		if (width <= 0 || height <= 0 || stride < width || offset < 0
+				|| offset + (long) (height - 1) * stride + width > pixels.length) {
+			throw new IllegalArgumentException("Illegal raster " + width + "x"
+					+ height + " with stride " + stride + " at offset "
+					+ offset + " in " + pixels.length + " pixels");
+		}
+		this.pixels = pixels;
+		this.offset = offset;
+		this.stride = stride;
+		this.width = width;
+		this.height = height;
+	}
+
+	static int checkedSize(int width, int height) {
+		if (width <= 0 || height <= 0
+				|| (long) width * height > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Illegal raster size " + width
+					+ "x" + height);
+		}
+		return width * height;
+	}
+
+	/**
+	 * Returns the backing array, which is not copied.
+	 *
+	 * @return the packed ARGB pixels
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getStride() {
+		return stride;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getPixel(int x, int y) {
+		return pixels[offset + y * stride + x];
+	}
+
+	public void setPixel(int x, int y, int argb) {
+		pixels[offset + y * stride + x] = argb;
+	}
+
+	/**
+	 * Copies the pixels of the raster into a new array without gaps between
+	 * the rows.
+	 *
+	 * @return a raster with a stride equal to the width
+	 */
+	public PackedRaster copy() {
+		PackedRaster copy = new PackedRaster(width, height);
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(pixels, offset + y * stride, copy.pixels, y
+					* width, width);
+		}
+		return copy;
+	}
+
+	/**
+	 * Converts the raster into the three-dimensional array used by
+	 * {@link ImageGrabber#grabRGB(String)}.
+	 *
+	 * @return the RGB values of the pixels. The first index is the
+	 *         y-coordinate, the second index is the x-coordinate and the third
+	 *         index is the color-component: red = 0; green = 1; blue = 2.
+	 */
+	public int[][][] toRGB() {
+		int[][][] rgb = new int[height][width][3];
+
+		for (int y = 0; y < height; y++) {
+			int index = offset + y * stride;
+			for (int x = 0; x < width; x++) {
+				int pixel = pixels[index++];
+				int[] components = rgb[y][x];
+				components[0] = (pixel >> 16) & 0xff;
+				components[1] = (pixel >> 8) & 0xff;
+				components[2] = pixel & 0xff;
+			}
+		}
+
+		return rgb;
+	}
+}
@@ -0,0 +1,264 @@
+package uistuff;
+
+import java.awt.Rectangle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A PixelCanvas is a rectangular area of ARGB pixels a {@link DrawingTurtle}
+ * can draw into. The first row is the top row of the picture.
+ *
+ * Implementations differ in where the pixels are stored. Subclasses must
+ * implement the access to single pixels and spans, the inner loop of the line
+ * rasterizer can be overridden when the storage allows a faster walk.
+ * Operations on disjoint regions of a canvas may run concurrently.
+ *
+ * @version 1.0
+ */
+public abstract class PixelCanvas {
+	/* rectangles with more pixels are filled by several threads */
+	private static final long PARALLEL_FILL_AREA = 1 << 18;
+
+	final int width;
+
+	final int height;
+
+	private volatile boolean trackDirty = false;
+
+	private int dirtyX0 = Integer.MAX_VALUE;
+
+	private int dirtyY0 = Integer.MAX_VALUE;
+
+	private int dirtyX1 = Integer.MIN_VALUE;
+
+	private int dirtyY1 = Integer.MIN_VALUE;
+
+	protected PixelCanvas(int width, int height) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Illegal canvas size " + width
+					+ "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public abstract int getPixel(int x, int y);
+
+	public abstract void setPixel(int x, int y, int argb);
+
+	/**
+	 * Sets the pixels from column x0 up to, but not including, column x1 of a
+	 * row to one color. The span must lie within the canvas.
+	 *
+	 * @param y
+	 *            the row
+	 * @param x0
+	 *            the first column
+	 * @param x1
+	 *            the column following the last one
+	 * @param argb
+	 *            the packed color
+	 */
+	public abstract void fillSpan(int y, int x0, int x1, int argb);
+
+	/**
+	 * Copies a part of a row into an array.
+	 *
+	 * @param y
+	 *            the row
+	 * @param x
+	 *            the first column to copy
+	 * @param count
+	 *            the number of pixels to copy
+	 * @param destination
+	 *            the array receiving the packed ARGB values
+	 * @param offset
+	 *            the index of the first pixel in the destination
+	 */
+	public abstract void getRow(int y, int x, int count, int[] destination,
+			int offset);
+
+	/**
+	 * Sets all pixels of a rectangle to one color. The rectangle is given by
+	 * its upper left corner (inclusive) and its lower right corner (exclusive)
+	 * and must lie within the canvas. Large rectangles are split into bands
+	 * of rows which are filled in parallel by the common ForkJoinPool.
+	 *
+	 * @param x0
+	 *            the first column
+	 * @param y0
+	 *            the first row
+	 * @param x1
+	 *            the column following the last one
+	 * @param y1
+	 *            the row following the last one
+	 * @param argb
+	 *            the packed color
+	 */
+	public void fillRect(int x0, int y0, int x1, int y1, int argb) {
+		if (x0 >= x1 || y0 >= y1) {
+			return;
+		}
+		if ((long) (x1 - x0) * (y1 - y0) > PARALLEL_FILL_AREA) {
+			ForkJoinPool.commonPool().invoke(
+					new FillTask(x0, y0, x1, y1, argb));
+		} else {
+			fillRows(x0, y0, x1, y1, argb);
+		}
+		markDirty(x0, y0, x1 - 1, y1 - 1);
+	}
+
+	/**
+	 * Fills a rectangle on the calling thread, see
+	 * {@link #fillRect(int, int, int, int, int)}. Subclasses override this
+	 * method when they can copy a filled row faster than filling the next
+	 * one.
+	 */
+	void fillRows(int x0, int y0, int x1, int y1, int argb) {
+		for (int y = y0; y < y1; y++) {
+			fillSpan(y, x0, x1, argb);
+		}
+	}
+
+	private class FillTask extends RecursiveAction {
+		private static final long serialVersionUID = -3016283470418255114L;
+
+		private final int x0;
+
+		private final int y0;
+
+		private final int x1;
+
+		private final int y1;
+
+		private final int argb;
+
+		FillTask(int x0, int y0, int x1, int y1, int argb) {
+			this.x0 = x0;
+			this.y0 = y0;
+			this.x1 = x1;
+			this.y1 = y1;
+			this.argb = argb;
+		}
+
+		protected void compute() {
+			if ((long) (x1 - x0) * (y1 - y0) > PARALLEL_FILL_AREA
+					&& y1 - y0 > 1) {
+				int half = (y0 + y1) >>> 1;
+				invokeAll(new FillTask(x0, y0, x1, half, argb), new FillTask(
+						x0, half, x1, y1, argb));
+			} else {
+				fillRows(x0, y0, x1, y1, argb);
+			}
+		}
+	}
+
+	/**
+	 * Sets every pixel of the canvas to the given ARGB value.
+	 *
+	 * @param argb
+	 *            the packed color
+	 */
+	public void fill(int argb) {
+		fillRect(0, 0, width, height, argb);
+	}
+
+	/**
+	 * Inner loop of the line rasterizer. Writes count pixels, starting at
+	 * (x, y). After every pixel the position moves one major step, and one
+	 * minor step as well whenever the error term d exceeds the limit, in
+	 * which case c is subtracted from d. The error term grows by k per pixel.
+	 * The caller guarantees that all pixels lie within the canvas.
+	 */
+	void drawLineRun(int x, int y, int count, int majorDx, int majorDy,
+			int minorDx, int minorDy, long d, long limit, long c, long k,
+			int argb) {
+		for (int i = 0; i < count; i++) {
+			setPixel(x, y, argb);
+			x += majorDx;
+			y += majorDy;
+			d += k;
+			/* mask is -1 if d > limit, 0 otherwise */
+			long mask = (limit - d) >> 63;
+			x += minorDx & (int) mask;
+			y += minorDy & (int) mask;
+			d -= c & mask;
+		}
+	}
+
+	/**
+	 * Switches the tracking of modified pixels on or off. While tracking is
+	 * on, drawing operations record the bounding box of all pixels they
+	 * change, which allows a viewer to refresh only this region. Switching
+	 * tracking on marks the whole canvas as modified.
+	 *
+	 * @param trackDirty
+	 *            true to record modified regions
+	 */
+	public void setDirtyTracking(boolean trackDirty) {
+		synchronized (this) {
+			dirtyX0 = Integer.MAX_VALUE;
+			dirtyY0 = Integer.MAX_VALUE;
+			dirtyX1 = Integer.MIN_VALUE;
+			dirtyY1 = Integer.MIN_VALUE;
+		}
+		this.trackDirty = trackDirty;
+		markDirty(0, 0, width - 1, height - 1);
+	}
+
+	public boolean isDirtyTracking() {
+		return trackDirty;
+	}
+
+	/**
+	 * Adds a rectangle to the modified region. The rectangle is given by its
+	 * inclusive corners and must lie within the canvas. Nothing is recorded
+	 * while dirty tracking is off.
+	 *
+	 * @param x0
+	 *            the leftmost modified column
+	 * @param y0
+	 *            the topmost modified row
+	 * @param x1
+	 *            the rightmost modified column
+	 * @param y1
+	 *            the bottommost modified row
+	 */
+	public void markDirty(int x0, int y0, int x1, int y1) {
+		if (trackDirty) {
+			synchronized (this) {
+				dirtyX0 = Math.min(dirtyX0, x0);
+				dirtyY0 = Math.min(dirtyY0, y0);
+				dirtyX1 = Math.max(dirtyX1, x1);
+				dirtyY1 = Math.max(dirtyY1, y1);
+			}
+		}
+	}
+
+	/**
+	 * Returns the bounding box of all pixels modified since the last call and
+	 * resets the modified region.
+	 *
+	 * @return the modified region or null if nothing has changed
+	 */
+	public synchronized Rectangle takeDirtyRegion() {
+		if (dirtyX0 > dirtyX1 || dirtyY0 > dirtyY1) {
+			return null;
+		}
+		Rectangle dirty = new Rectangle(dirtyX0, dirtyY0, dirtyX1 - dirtyX0
+				+ 1, dirtyY1 - dirtyY0 + 1);
+		dirtyX0 = Integer.MAX_VALUE;
+		dirtyY0 = Integer.MAX_VALUE;
+		dirtyX1 = Integer.MIN_VALUE;
+		dirtyY1 = Integer.MIN_VALUE;
+		return dirty;
+	}
+}
@@ -0,0 +1,269 @@
+package uistuff;
+
+/**
+ * PixelKernels convert whole runs of pixels between packed ARGB values,
+ * separate color planes, gray values and the YCbCr color space. They do the
+ * per pixel work of the {@link ColorConverter}, the {@link ImageGrabber} and
+ * the {@link Presenter}.
+ *
+ * The color space conversions use integer fixed-point arithmetic: every
+ * coefficient is scaled by 2^16 and rounded once, so a product is the
+ * rounded coefficient times the component. The scalar implementation looks
+ * the products up in one precomputed table per channel and coefficient, the
+ * SIMD implementation multiplies. Both compute the same sums and therefore
+ * the same results.
+ *
+ * This class is the scalar implementation. The SIMD implementation
+ * VectorPixelKernels lives in the separate source root src-vector, because
+ * compiling it needs javac --add-modules jdk.incubator.vector. {@link #get()}
+ * loads it by name and uses it only if its class has been compiled onto the
+ * class path and the JVM has been started with --add-modules
+ * jdk.incubator.vector. In every other case the scalar implementation is
+ * used, see README.md. Both implementations produce identical results.
+ * Setting the system property uistuff.scalarKernels to true forces the
+ * scalar implementation.
+ *
+ * @version 1.0
+ */
+class PixelKernels {
+	/* the coefficients are scaled by 2^16 */
+	static final int SHIFT = 16;
+
+	/*
+	 * Added to every sum before it is shifted, so the rounding errors of the
+	 * coefficients cannot push a result that is an integer below it.
+	 */
+	static final int BIAS = 1 << 4;
+
+	/* Cb and Cr are centered at 128 */
+	static final int CENTER = 128;
+
+	static final int Y_R = fixed(0.299);
+
+	static final int Y_G = fixed(0.587);
+
+	static final int Y_B = fixed(0.114);
+
+	static final int CB_R = fixed(-0.299 / 1.772);
+
+	static final int CB_G = fixed(-0.587 / 1.772);
+
+	static final int CB_B = fixed((1 - 0.114) / 1.772);
+
+	static final int CR_R = fixed((1 - 0.299) / 1.402);
+
+	static final int CR_G = fixed(-0.587 / 1.402);
+
+	static final int CR_B = fixed(-0.114 / 1.402);
+
+	static final int R_CR = fixed(701.0 / 500.0);
+
+	static final int G_CB = fixed(-25251.0 / 73375.0);
+
+	static final int G_CR = fixed(-209599.0 / 293500.0);
+
+	static final int B_CB = fixed(443.0 / 250.0);
+
+	/* the products of the coefficients with all component values */
+	private static final int[] Y_R_TABLE = table(Y_R, 0, 0);
+
+	private static final int[] Y_G_TABLE = table(Y_G, 0, 0);
+
+	private static final int[] Y_B_TABLE = table(Y_B, 0, BIAS);
+
+	private static final int[] CB_R_TABLE = table(CB_R, 0, 0);
+
+	private static final int[] CB_G_TABLE = table(CB_G, 0, 0);
+
+	private static final int[] CB_B_TABLE = table(CB_B, 0,
+			(CENTER << SHIFT) + BIAS);
+
+	private static final int[] CR_R_TABLE = table(CR_R, 0,
+			(CENTER << SHIFT) + BIAS);
+
+	private static final int[] CR_G_TABLE = table(CR_G, 0, 0);
+
+	private static final int[] CR_B_TABLE = table(CR_B, 0, 0);
+
+	private static final int[] R_CR_TABLE = table(R_CR, CENTER, BIAS);
+
+	private static final int[] G_CB_TABLE = table(G_CB, CENTER, 0);
+
+	private static final int[] G_CR_TABLE = table(G_CR, CENTER, BIAS);
+
+	private static final int[] B_CB_TABLE = table(B_CB, CENTER, BIAS);
+
+	private static final PixelKernels INSTANCE = create();
+
+	PixelKernels() {
+	}
+
+	/**
+	 * Returns the fastest implementation available in this JVM.
+	 *
+	 * @return the kernels to use
+	 */
+	static PixelKernels get() {
+		return INSTANCE;
+	}
+
+	private static PixelKernels create() {
+		if (!Boolean.getBoolean("uistuff.scalarKernels")) {
+			try {
+				/* loaded by name, the class cannot link without the module */
+				return (PixelKernels) Class.forName(
+						"uistuff.VectorPixelKernels").getDeclaredConstructor()
+						.newInstance();
+			} catch (LinkageError e) {
+				/* jdk.incubator.vector has not been added to the JVM */
+			} catch (ReflectiveOperationException e) {
+				/* src-vector has not been compiled */
+			} catch (RuntimeException e) {
+				/* the Vector API refused to initialize on this platform */
+			}
+		}
+		return new PixelKernels();
+	}
+
+	private static int fixed(double coefficient) {
+		return (int) Math.round(coefficient * (1 << SHIFT));
+	}
+
+	/*
+	 * Returns the products of the coefficient with i - center for all i
+	 * between 0 and 255, plus a constant.
+	 */
+	private static int[] table(int coefficient, int center, int constant) {
+		int[] table = new int[256];
+		for (int i = 0; i < 256; i++) {
+			table[i] = coefficient * (i - center) + constant;
+		}
+		return table;
+	}
+
+	private static int clamp(int value) {
+		return value < 0 ? 0 : value > 255 ? 255 : value;
+	}
+
+	/**
+	 * Tells whether this implementation uses SIMD instructions.
+	 *
+	 * @return true for the vector implementation
+	 */
+	boolean isVectorized() {
+		return false;
+	}
+
+	/**
+	 * Packs byte planes of red, green and blue samples into opaque ARGB
+	 * values.
+	 */
+	void pack(byte[] samples, int redOffset, int greenOffset,
+			int blueOffset, int[] argb, int dstOffset, int count) {
+		for (int i = 0; i < count; i++) {
+			argb[dstOffset + i] = 255 << 24
+					| (samples[redOffset + i] & 0xff) << 16
+					| (samples[greenOffset + i] & 0xff) << 8
+					| (samples[blueOffset + i] & 0xff);
+		}
+	}
+
+	/**
+	 * Splits ARGB values into byte planes of red, green and blue samples, the
+	 * alpha byte is dropped.
+	 */
+	void unpack(int[] argb, int srcOffset, byte[] samples, int redOffset,
+			int greenOffset, int blueOffset, int count) {
+		for (int i = 0; i < count; i++) {
+			int pixel = argb[srcOffset + i];
+			samples[redOffset + i] = (byte) (pixel >> 16);
+			samples[greenOffset + i] = (byte) (pixel >> 8);
+			samples[blueOffset + i] = (byte) pixel;
+		}
+	}
+
+	/**
+	 * Converts gray values into opaque ARGB values with equal red, green and
+	 * blue components.
+	 */
+	void grayToARGB(int[] gray, int srcOffset, int[] argb, int dstOffset,
+			int count) {
+		for (int i = 0; i < count; i++) {
+			int g = gray[srcOffset + i];
+			argb[dstOffset + i] = 255 << 24 | g << 16 | g << 8 | g;
+		}
+	}
+
+	/**
+	 * Converts gray samples into opaque ARGB values with equal red, green and
+	 * blue components.
+	 */
+	void grayToARGB(byte[] gray, int srcOffset, int[] argb, int dstOffset,
+			int count) {
+		for (int i = 0; i < count; i++) {
+			int g = gray[srcOffset + i] & 0xff;
+			argb[dstOffset + i] = 255 << 24 | g << 16 | g << 8 | g;
+		}
+	}
+
+	/**
+	 * Converts ARGB values into gray values, the luminance Y of the YCbCr
+	 * color space between 0 and 255.
+	 */
+	void argbToGray(int[] argb, int srcOffset, int[] gray, int dstOffset,
+			int count) {
+		for (int i = 0; i < count; i++) {
+			int pixel = argb[srcOffset + i];
+			gray[dstOffset + i] = (Y_R_TABLE[(pixel >> 16) & 0xff]
+					+ Y_G_TABLE[(pixel >> 8) & 0xff] + Y_B_TABLE[pixel & 0xff]) >> SHIFT;
+		}
+	}
+
+	/**
+	 * Converts ARGB values into gray samples between 0 and 255.
+	 */
+	void argbToGray(int[] argb, int srcOffset, byte[] gray, int dstOffset,
+			int count) {
+		for (int i = 0; i < count; i++) {
+			int pixel = argb[srcOffset + i];
+			gray[dstOffset + i] = (byte) ((Y_R_TABLE[(pixel >> 16) & 0xff]
+					+ Y_G_TABLE[(pixel >> 8) & 0xff] + Y_B_TABLE[pixel & 0xff]) >> SHIFT);
+		}
+	}
+
+	/**
+	 * Converts ARGB values into Y, Cb and Cr samples scaled to 0 to 255, Cb
+	 * and Cr are clamped.
+	 */
+	void argbToYCbCr(int[] argb, int srcOffset, byte[] samples, int yOffset,
+			int cbOffset, int crOffset, int count) {
+		for (int i = 0; i < count; i++) {
+			int pixel = argb[srcOffset + i];
+			int r = (pixel >> 16) & 0xff;
+			int g = (pixel >> 8) & 0xff;
+			int b = pixel & 0xff;
+			samples[yOffset + i] = (byte) ((Y_R_TABLE[r] + Y_G_TABLE[g] + Y_B_TABLE[b]) >> SHIFT);
+			samples[cbOffset + i] = (byte) clamp((CB_R_TABLE[r]
+					+ CB_G_TABLE[g] + CB_B_TABLE[b]) >> SHIFT);
+			samples[crOffset + i] = (byte) clamp((CR_R_TABLE[r]
+					+ CR_G_TABLE[g] + CR_B_TABLE[b]) >> SHIFT);
+		}
+	}
+
+	/**
+	 * Converts Y, Cb and Cr samples into opaque ARGB values, the components
+	 * are clamped.
+	 */
+	void yCbCrToARGB(byte[] samples, int yOffset, int cbOffset,
+			int crOffset, int[] argb, int dstOffset, int count) {
+		for (int i = 0; i < count; i++) {
+			int y = (samples[yOffset + i] & 0xff) << SHIFT;
+			int cb = samples[cbOffset + i] & 0xff;
+			int cr = samples[crOffset + i] & 0xff;
+			int r = clamp((y + R_CR_TABLE[cr]) >> SHIFT);
+			int g = clamp((y + G_CB_TABLE[cb] + G_CR_TABLE[cr]) >> SHIFT);
+			int b = clamp((y + B_CB_TABLE[cb]) >> SHIFT);
+			argb[dstOffset + i] = 255 << 24 | r << 16 | g << 8 | b;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package uistuff;
+
+/**
+ * A PlanarRaster holds the samples of an image as unsigned bytes, one plane
+ * per channel. A raster has either one channel (gray-scale) or three channels
+ * (red = 0, green = 1, blue = 2). All planes share one byte array: the sample
+ * of channel c at (x, y) is found at index c * getPlaneSize() + y *
+ * getStride() + x.
+ *
+ * @version 1.0
+ */
+public class PlanarRaster {
+	public static final int GRAY = 1;
+
+	public static final int RGB = 3;
+
+	private final byte[] samples;
+
+	private final int channels;
+
+	private final int stride;
+
+	private final int width;
+
+	private final int height;
+
+	/**
+	 * Creates a raster with a new sample array. All samples are initialized
+	 * to zero.
+	 *
+	 * @param width
+	 *            the number of pixels per row
+	 * @param height
+	 *            the number of rows
+	 * @param channels
+	 *            GRAY or RGB
+	 */
+	public PlanarRaster(int width, int height, int channels) {
+		this(new byte[checkedSize(width, height, channels)], width, height,
+				width, channels);
+	}
+
+	/**
+	 * Creates a raster on an existing sample array.
+	 *
+	 * @param samples
+	 *            the planes, stored one after another
+	 * @param width
+	 *            the number of pixels per row
+	 * @param height
+	 *            the number of rows
+	 * @param stride
+	 *            the distance between the first samples of two adjacent rows
+	 *            of a plane
+	 * @param channels
+	 *            GRAY or RGB
+	 */
+	public PlanarRaster(byte[] samples, int width, int height, int stride,
+			int channels) {
+		if (channels != GRAY && channels != RGB) {
+			throw new IllegalArgumentException("Illegal channel count "
+					+ channels);
+		}
+		if (width <= 0 || height <= 0 || stride < width
+				|| (long) stride * height * channels > samples.length) {
+			throw new IllegalArgumentException("Illegal raster " + width + "x"
+					+ height + " with stride " + stride + " in "
+					+ samples.length + " samples");
+		}
+		this.samples = samples;
+		this.channels = channels;
+		this.stride = stride;
+		this.width = width;
+		this.height = height;
+	}
+
+	private static int checkedSize(int width, int height, int channels) {
+		if (width <= 0 || height <= 0
+				|| (long) width * height * channels > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Illegal raster size " + width
+					+ "x" + height + "x" + channels);
+		}
+		return width * height * channels;
+	}
+
+	/**
+	 * Returns the backing array, which is not copied.
+	 *
+	 * @return the samples of all planes
+	 */
+	public byte[] getSamples() {
+		return samples;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public int getStride() {
+		return stride;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the distance between the first samples of two adjacent planes.
+	 *
+	 * @return stride * height
+	 */
+	public int getPlaneSize() {
+		return stride * height;
+	}
+
+	/**
+	 * Returns one sample.
+	 *
+	 * @param x
+	 *            the column
+	 * @param y
+	 *            the row
+	 * @param channel
+	 *            the plane, 0 for gray-scale rasters
+	 * @return the sample between 0 and 255
+	 */
+	public int getSample(int x, int y, int channel) {
+		return samples[channel * stride * height + y * stride + x] & 0xff;
+	}
+
+	public void setSample(int x, int y, int channel, int value) {
+		samples[channel * stride * height + y * stride + x] = (byte) value;
+	}
+
+	/**
+	 * Copies the samples of the raster into a new array.
+	 *
+	 * @return a raster with the same stride and channels
+	 */
+	public PlanarRaster copy() {
+		return new PlanarRaster(samples.clone(), width, height, stride,
+				channels);
+	}
+
+	/**
+	 * Converts a gray-scale raster into the two-dimensional array used by
+	 * {@link ImageGrabber#grabGrayScale(String)}.
+	 *
+	 * @return the gray-scale values, the first index is the y-coordinate and
+	 *         the second index is the x-coordinate
+	 */
+	public int[][] toGrayScale() {
+		if (channels != GRAY) {
+			throw new IllegalStateException("Raster is not gray-scale");
+		}
+		int[][] grayScale = new int[height][width];
+
+		for (int y = 0; y < height; y++) {
+			int index = y * stride;
+			int[] row = grayScale[y];
+			for (int x = 0; x < width; x++) {
+				row[x] = samples[index++] & 0xff;
+			}
+		}
+
+		return grayScale;
+	}
+}
@@ -0,0 +1,175 @@
+package uistuff;
+
+/**
+ * Fills polygons with the scanline algorithm using an active edge table. A
+ * pixel is filled if its center lies inside the polygon according to the
+ * even-odd rule, and every row is written as whole spans with
+ * {@link PixelCanvas#fillSpan(int, int, int, int)}.
+ *
+ * The edge table is kept in primitive arrays which are reused from polygon
+ * to polygon, so a PolygonFiller must not be shared between threads.
+ *
+ * @version 1.0
+ */
+class PolygonFiller {
+	/* the edges, sorted by their first row */
+	private int[] edgeFirstRow = new int[16];
+
+	private int[] edgeEndRow = new int[16];
+
+	private double[] edgeX = new double[16];
+
+	private double[] edgeSlope = new double[16];
+
+	private int edgeCount = 0;
+
+	/* indices of the edges crossing the current row, sorted by x */
+	private int[] active = new int[16];
+
+	/* the bounding box of the pixels written by the last fill */
+	int filledX0, filledY0, filledX1, filledY1;
+
+	/**
+	 * Fills a polygon given in canvas coordinates, where the center of
+	 * the pixel in column c and row r is the point (c, r).
+	 *
+	 * @return true if at least one pixel has been written
+	 */
+	boolean fill(PixelCanvas canvas, double[] xs, double[] ys, int n,
+			int argb, int clipX0, int clipY0, int clipX1, int clipY1) {
+		buildEdges(xs, ys, n, clipY0, clipY1);
+		if (edgeCount == 0) {
+			return false;
+		}
+
+		int activeCount = 0;
+		int next = 0;
+		boolean filled = false;
+		long pixels = 0;
+
+		filledX0 = Integer.MAX_VALUE;
+		filledX1 = Integer.MIN_VALUE;
+		filledY0 = Integer.MAX_VALUE;
+		filledY1 = Integer.MIN_VALUE;
+
+		for (int row = edgeFirstRow[0]; row < clipY1
+				&& (next < edgeCount || activeCount > 0); row++) {
+			/* drop finished edges and advance the others to this row */
+			int kept = 0;
+			for (int i = 0; i < activeCount; i++) {
+				int e = active[i];
+				if (edgeEndRow[e] > row) {
+					edgeX[e] += edgeSlope[e];
+					active[kept++] = e;
+				}
+			}
+			activeCount = kept;
+
+			while (next < edgeCount && edgeFirstRow[next] == row) {
+				active[activeCount++] = next++;
+			}
+
+			/* insertion sort, the order hardly changes between rows */
+			for (int i = 1; i < activeCount; i++) {
+				int e = active[i];
+				double x = edgeX[e];
+				int j = i - 1;
+				while (j >= 0 && edgeX[active[j]] > x) {
+					active[j + 1] = active[j];
+					j--;
+				}
+				active[j + 1] = e;
+			}
+
+			for (int i = 0; i + 1 < activeCount; i += 2) {
+				int from = Math.max(clipX0, (int) Math
+						.ceil(edgeX[active[i]]));
+				int to = Math.min(clipX1, (int) Math
+						.ceil(edgeX[active[i + 1]]));
+				if (from < to) {
+					canvas.fillSpan(row, from, to, argb);
+					filledX0 = Math.min(filledX0, from);
+					filledX1 = Math.max(filledX1, to - 1);
+					filledY0 = Math.min(filledY0, row);
+					filledY1 = row;
+					filled = true;
+					pixels += to - from;
+				}
+			}
+		}
+
+		if (RenderMetrics.enabled) {
+			RenderMetrics.recordPixels(pixels, 0);
+		}
+		return filled;
+	}
+
+	/*
+	 * Collects all non horizontal edges. An edge covers the rows r with
+	 * yTop <= r < yBottom, and edgeX holds its x-coordinate at the first
+	 * covered row.
+	 */
+	private void buildEdges(double[] xs, double[] ys, int n, int clipY0,
+			int clipY1) {
+		ensureCapacity(n);
+		edgeCount = 0;
+
+		for (int i = 0; i < n; i++) {
+			int j = i + 1 == n ? 0 : i + 1;
+			double x0 = xs[i], y0 = ys[i], x1 = xs[j], y1 = ys[j];
+			if (y0 > y1) {
+				double t = x0;
+				x0 = x1;
+				x1 = t;
+				t = y0;
+				y0 = y1;
+				y1 = t;
+			}
+
+			double first = Math.ceil(y0);
+			double end = Math.ceil(y1);
+			if (first >= end || end <= clipY0 || first >= clipY1) {
+				continue;
+			}
+
+			double slope = (x1 - x0) / (y1 - y0);
+			/* rows above the clip region are never visited */
+			first = Math.max(first, clipY0);
+			int e = edgeCount++;
+			edgeFirstRow[e] = (int) first;
+			edgeEndRow[e] = (int) Math.min(end, clipY1);
+			edgeX[e] = x0 + (first - y0) * slope;
+			edgeSlope[e] = slope;
+		}
+
+		/* insertion sort by first row, polygons have few edges */
+		for (int i = 1; i < edgeCount; i++) {
+			int firstRow = edgeFirstRow[i];
+			int endRow = edgeEndRow[i];
+			double x = edgeX[i];
+			double slope = edgeSlope[i];
+			int j = i - 1;
+			while (j >= 0 && edgeFirstRow[j] > firstRow) {
+				edgeFirstRow[j + 1] = edgeFirstRow[j];
+				edgeEndRow[j + 1] = edgeEndRow[j];
+				edgeX[j + 1] = edgeX[j];
+				edgeSlope[j + 1] = edgeSlope[j];
+				j--;
+			}
+			edgeFirstRow[j + 1] = firstRow;
+			edgeEndRow[j + 1] = endRow;
+			edgeX[j + 1] = x;
+			edgeSlope[j + 1] = slope;
+		}
+	}
+
+	private void ensureCapacity(int n) {
+		if (edgeFirstRow.length < n) {
+			edgeFirstRow = new int[n];
+			edgeEndRow = new int[n];
+			edgeX = new double[n];
+			edgeSlope = new double[n];
+			active = new int[n];
+		}
+	}
+}
@@ -7,13 +7,20 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Frame;
 import java.awt.Image;
-import java.awt.Toolkit;
+import java.awt.Rectangle;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.awt.image.MemoryImageSource;
-import java.util.HashMap;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
@@ -411,26 +418,88 @@ public class Presenter {
 	 *            2
 	 */
 	public static void viewImage(String title, int[][][] rgbImage) {
-		int[] pixels = new int[rgbImage[0].length * rgbImage.length];
-		int index = 0;
+		BufferedImage image = new BufferedImage(rgbImage[0].length,
+				rgbImage.length, BufferedImage.TYPE_INT_RGB);
+		packRGB(rgbImage, pixelsOf(image));
+		viewImage(title, image);
+	}
 
-		for (int y = 0; y < rgbImage.length; y++) {
-			for (int x = 0; x < rgbImage[0].length; x++) {
-				int color = 255 << 24;
-				for (int c = 0; c < 3; c++) {
-					color |= rgbImage[y][x][c] << (8 * (2 - c));
-				}
-				pixels[index++] = color;
+	/**
+	 * The method viewImage opens a frame and displays the content of a canvas
+	 * in it. Later changes of the canvas are not shown.
+	 * 
+	 * @param title
+	 *            the title showing up in the title bar of the frame
+	 * @param canvas
+	 *            the canvas containing the packed ARGB pixels, e.g. a
+	 *            FrameBuffer
+	 */
+	public static void viewImage(String title, PixelCanvas canvas) {
+		BufferedImage image = new BufferedImage(canvas.getWidth(), canvas
+				.getHeight(), BufferedImage.TYPE_INT_RGB);
+		int[] pixels = pixelsOf(image);
+		for (int y = 0; y < canvas.getHeight(); y++) {
+			canvas.getRow(y, 0, canvas.getWidth(), pixels, y
+					* canvas.getWidth());
+		}
+		viewImage(title, image);
+	}
+
+	/**
+	 * The method viewImage opens a frame and displays a raster of packed ARGB
+	 * pixels in it.
+	 * 
+	 * @param title
+	 *            the title showing up in the title bar of the frame
+	 * @param raster
+	 *            the raster, e.g. grabbed by ImageGrabber.grabPackedRGB
+	 */
+	public static void viewImage(String title, PackedRaster raster) {
+		int width = raster.getWidth();
+		BufferedImage image = new BufferedImage(width, raster.getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		int[] pixels = pixelsOf(image);
+		for (int y = 0; y < raster.getHeight(); y++) {
+			System.arraycopy(raster.getPixels(), raster.getOffset() + y
+					* raster.getStride(), pixels, y * width, width);
+		}
+		viewImage(title, image);
+	}
+
+	/**
+	 * The method viewImage opens a frame and displays a planar raster in it.
+	 * A raster with one channel is shown as gray-scale image.
+	 * 
+	 * @param title
+	 *            the title showing up in the title bar of the frame
+	 * @param raster
+	 *            the raster, e.g. grabbed by ImageGrabber.grabPlanarRGB
+	 */
+	public static void viewImage(String title, PlanarRaster raster) {
+		int width = raster.getWidth();
+		BufferedImage image = new BufferedImage(width, raster.getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		int[] pixels = pixelsOf(image);
+		byte[] samples = raster.getSamples();
+		int plane = raster.getPlaneSize();
+		PixelKernels kernels = PixelKernels.get();
+		for (int y = 0; y < raster.getHeight(); y++) {
+			int row = y * raster.getStride();
+			if (raster.getChannels() == PlanarRaster.GRAY) {
+				kernels.grayToARGB(samples, row, pixels, y * width, width);
+			} else {
+				kernels.pack(samples, row, plane + row, 2 * plane + row,
+						pixels, y * width, width);
 			}
 		}
-		Image image = Toolkit.getDefaultToolkit().createImage(
-				new MemoryImageSource(rgbImage[0].length, rgbImage.length,
-						pixels, 0, rgbImage[0].length));
+		viewImage(title, image);
+	}
 
+	private static void viewImage(String title, BufferedImage image) {
 		ImageFrame imf = new ImageFrame(image);
 		imf.setTitle("Image - " + title);
 		/* ---------------------- Image methods ------------------------ */
-		imf.setCanvasSize(rgbImage[0].length, rgbImage.length);
+		imf.setCanvasSize(image.getWidth(), image.getHeight());
 		imf.pack();
 		imf.setResizable(false);
 		imf.setVisible(true);
@@ -447,16 +516,44 @@ public class Presenter {
 	 *            second index is the x-coordinate into the image.
 	 */
 	public static void viewImage(String title, int[][] grayScaleImage) {
-		int[][][] rgbImage = new int[grayScaleImage.length][grayScaleImage[0].length][3];
+		BufferedImage image = new BufferedImage(grayScaleImage[0].length,
+				grayScaleImage.length, BufferedImage.TYPE_INT_RGB);
+		packGrayScale(grayScaleImage, pixelsOf(image));
+		viewImage(title, image);
+	}
 
-		for (int y = 0; y < grayScaleImage.length; y++) {
-			for (int x = 0; x < grayScaleImage[0].length; x++) {
-				rgbImage[y][x] = ImageGrabber.ImageGrabberUtilities
-						.convertYCbCrToRGB(
-								(double) grayScaleImage[y][x] / 256.0, 0.5, 0.5);
+	/*
+	 * Returns the pixel array backing an image of TYPE_INT_RGB. Writing into
+	 * this array changes the image without any further copy.
+	 */
+	private static int[] pixelsOf(BufferedImage image) {
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	static void packRGB(int[][][] rgbImage, int[] pixels) {
+		int index = 0;
+
+		for (int y = 0; y < rgbImage.length; y++) {
+			int[][] row = rgbImage[y];
+			for (int x = 0; x < row.length; x++) {
+				int[] rgb = row[x];
+				pixels[index++] = 255 << 24 | rgb[0] << 16 | rgb[1] << 8
+						| rgb[2];
 			}
 		}
-		viewImage(title, rgbImage);
+	}
+
+	/*
+	 * A gray value converted by convertYCbCrToRGB with Cb = Cr = 0.5 yields
+	 * three equal components, so the rows are packed by the kernels.
+	 */
+	static void packGrayScale(int[][] grayScaleImage, int[] pixels) {
+		PixelKernels kernels = PixelKernels.get();
+
+		for (int y = 0; y < grayScaleImage.length; y++) {
+			int width = grayScaleImage[y].length;
+			kernels.grayToARGB(grayScaleImage[y], 0, pixels, y * width, width);
+		}
 	}
 
 	/* ---------------------- Movie methods ------------------------ */
@@ -465,12 +562,19 @@ public class Presenter {
 
 		private MovieCanvas movieCanvas = null;
 
-		private Image image = null;
+		private BufferedImage image = null;
 		
 		private int[][][] rgbImage = null;
 		
 		private int[][] grayScaleImage = null;
 
+		private PixelCanvas canvas = null;
+
+		private final AtomicBoolean stale = new AtomicBoolean(false);
+
+		/* serializes the updates of the timer and of viewMovie */
+		private final Object updateLock = new Object();
+
 		private class MovieFrameWindowAdapter extends WindowAdapter {
 			private MovieFrame movieFrame = null;
 
@@ -479,11 +583,15 @@ public class Presenter {
 			}
 
 			public void windowClosing(WindowEvent e) {
-				if (grayScaleImage != null) {
+				if (canvas != null) {
+					movieFrames.remove(canvas);
+					canvas.setDirtyTracking(false);
+				} else if (grayScaleImage != null) {
 					movieFrames.remove(grayScaleImage);
 				} else {
 					movieFrames.remove(rgbImage);
 				}
+				movieClosed();
 				movieFrame.closeFrame();
 			}
 		}
@@ -502,62 +610,119 @@ public class Presenter {
 
 		public MovieFrame(String title, int[][][] rgbImage) {
 			this.rgbImage = rgbImage;
+			this.image = new BufferedImage(rgbImage[0].length,
+					rgbImage.length, BufferedImage.TYPE_INT_RGB);
 			initFrame(title);
 		}
 		
 		public MovieFrame(String title, int[][] grayScaleImage) {
 			this.grayScaleImage = grayScaleImage;
-			rgbImage = new int[grayScaleImage.length][grayScaleImage[0].length][3];
+			this.image = new BufferedImage(grayScaleImage[0].length,
+					grayScaleImage.length, BufferedImage.TYPE_INT_RGB);
+			initFrame(title);
+		}
+
+		public MovieFrame(String title, PixelCanvas canvas) {
+			this.canvas = canvas;
+			/*
+			 * The canvas records which region has changed. The image of a
+			 * frame buffer shares its pixel array, so only this region has to
+			 * be repainted. Other canvases copy this region into the image.
+			 */
+			canvas.setDirtyTracking(true);
+			if (canvas instanceof FrameBuffer) {
+				canvas.takeDirtyRegion();
+				this.image = ((FrameBuffer) canvas).asBufferedImage();
+			} else {
+				this.image = new BufferedImage(canvas.getWidth(), canvas
+						.getHeight(), BufferedImage.TYPE_INT_RGB);
+				copyRegion(canvas.takeDirtyRegion());
+			}
 			initFrame(title);
 		}
 
 		private void initFrame(String title) {
 			this.addWindowListener(new MovieFrameWindowAdapter(this));
 			this.setLayout(new BorderLayout());
-			this.image = createImage();
+			convertImage();
 			movieCanvas = new MovieCanvas();
 			this.add(movieCanvas);
 			this.setTitle("Movie - " + title);
-			this.setCanvasSize(rgbImage[0].length, rgbImage.length);
+			this.setCanvasSize(image.getWidth(), image.getHeight());
 			this.pack();
 			this.setResizable(false);
 			this.setVisible(true);
 		}
 
-		private Image createImage() {
+		/*
+		 * Converts the array shown by this frame directly into the pixels of
+		 * the image. Canvases are copied region by region by updateCanvas.
+		 * The array is locked while it is read, so a drawer holding its
+		 * monitor while drawing a frame never shows a torn frame.
+		 */
+		private void convertImage() {
 			if (grayScaleImage != null) {
-				for (int y = 0; y < grayScaleImage.length; y++) {
-					for (int x = 0; x < grayScaleImage[0].length; x++) {
-						rgbImage[y][x] = ImageGrabber.ImageGrabberUtilities
-						.convertYCbCrToRGB(
-								(double) grayScaleImage[y][x] / 256.0, 0.5, 0.5);
-					}
+				synchronized (grayScaleImage) {
+					packGrayScale(grayScaleImage, pixelsOf(image));
+				}
+			} else if (rgbImage != null) {
+				synchronized (rgbImage) {
+					packRGB(rgbImage, pixelsOf(image));
 				}
 			}
-			
-			int[] pixels = new int[rgbImage[0].length * rgbImage.length];
-			int index = 0;
-
-			for (int y = 0; y < rgbImage.length; y++) {
-				for (int x = 0; x < rgbImage[0].length; x++) {
-					int color = 255 << 24;
-					for (int c = 0; c < 3; c++) {
-						color |= rgbImage[y][x][c] << (8 * (2 - c));
+		}
+
+		/*
+		 * Copies a region of a canvas which does not share its pixels with
+		 * the image.
+		 */
+		private void copyRegion(Rectangle region) {
+			if (region == null || canvas instanceof FrameBuffer) {
+				return;
+			}
+			int[] pixels = pixelsOf(image);
+			int width = image.getWidth();
+			for (int y = region.y; y < region.y + region.height; y++) {
+				canvas.getRow(y, region.x, region.width, pixels, y * width
+						+ region.x);
+			}
+		}
+
+		public void updateCanvas() {
+			synchronized (updateLock) {
+				stale.set(false);
+				boolean measured = RenderMetrics.enabled;
+				long start = measured ? System.nanoTime() : 0;
+				Rectangle dirty = null;
+				if (canvas != null) {
+					dirty = canvas.takeDirtyRegion();
+					if (dirty == null) {
+						return;
 					}
-					pixels[index++] = color;
+					copyRegion(dirty);
+				} else {
+					convertImage();
+				}
+				if (measured) {
+					RenderMetrics.recordFrame(System.nanoTime() - start);
+				}
+				if (dirty != null) {
+					movieCanvas.repaint(dirty.x, dirty.y, dirty.width,
+							dirty.height);
+				} else {
+					movieCanvas.repaint();
 				}
 			}
-			
-			Image image = Toolkit.getDefaultToolkit().createImage(
-					new MemoryImageSource(rgbImage[0].length, rgbImage.length,
-							pixels, 0, rgbImage[0].length));
-			
-			return image;
 		}
 
-		public void updateCanvas() {
-			this.image = createImage();
-			movieCanvas.repaint();
+		private void markStale() {
+			stale.set(true);
+		}
+
+		private void updateIfStale() {
+			if (stale.get()) {
+				updateCanvas();
+			}
 		}
 
 		public void setCanvasSize(int width, int height) {
@@ -569,23 +734,128 @@ public class Presenter {
 		}
 	}
 
-	static Map<Object, MovieFrame> movieFrames = new HashMap<Object, MovieFrame>();
+	/* ---------------------- Movie refresh ------------------------ */
+
+	/**
+	 * Frame rate which presents a movie only when it is shown again with
+	 * viewMovie or when {@link #flushMovies()} is called.
+	 */
+	public static final int FINAL_FRAME_ONLY = 0;
+
+	private static volatile int movieFrameRate = 25;
+
+	private static ScheduledExecutorService refreshTimer = null;
+
+	private static volatile ScheduledFuture<?> refreshTask = null;
+
+	/**
+	 * Sets the maximum number of frames per second presented for each movie.
+	 * Updates arriving faster are coalesced into one frame.
+	 * 
+	 * @param framesPerSecond
+	 *            the maximum frame rate or FINAL_FRAME_ONLY
+	 */
+	public static synchronized void setMovieFrameRate(int framesPerSecond) {
+		if (framesPerSecond < 0) {
+			throw new IllegalArgumentException("Illegal frame rate "
+					+ framesPerSecond);
+		}
+		movieFrameRate = framesPerSecond;
+		stopRefreshTimer();
+		if (framesPerSecond != FINAL_FRAME_ONLY) {
+			startRefreshTimer();
+		}
+	}
+
+	public static synchronized int getMovieFrameRate() {
+		return movieFrameRate;
+	}
+
+	/**
+	 * Presents all movies which have changed since their last frame. Runs on
+	 * the calling thread.
+	 */
+	public static void flushMovies() {
+		for (MovieFrame mf : movieFrames.values()) {
+			mf.updateIfStale();
+		}
+	}
+
+	private static synchronized void startRefreshTimer() {
+		if (refreshTask != null || movieFrameRate == FINAL_FRAME_ONLY) {
+			return;
+		}
+		if (refreshTimer == null) {
+			refreshTimer = new ScheduledThreadPoolExecutor(1,
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "Presenter movie refresh");
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+		long period = Math.max(1, 1000000L / movieFrameRate);
+		refreshTask = refreshTimer.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				try {
+					flushMovies();
+				} catch (RuntimeException e) {
+					/*
+					 * The ticks stop until the next updateMovie, and the
+					 * exception is reported like any uncaught exception of
+					 * the refresh thread.
+					 */
+					stopRefreshTimer();
+					Thread t = Thread.currentThread();
+					t.getUncaughtExceptionHandler().uncaughtException(t, e);
+				}
+			}
+		}, period, period, TimeUnit.MICROSECONDS);
+	}
+
+	/*
+	 * Stops the refresh timer when the last movie has been closed. A movie
+	 * opened meanwhile starts it again.
+	 */
+	private static synchronized void movieClosed() {
+		if (movieFrames.isEmpty()) {
+			stopRefreshTimer();
+			if (!movieFrames.isEmpty()) {
+				startRefreshTimer();
+			}
+		}
+	}
+
+	private static synchronized void stopRefreshTimer() {
+		if (refreshTask != null) {
+			refreshTask.cancel(false);
+			refreshTask = null;
+		}
+	}
+
+	/*
+	 * Turtles running on different threads look up their movie frame on every
+	 * step, so the lookup must not need a lock. Closing a window removes its
+	 * frame at any time, so a frame is looked up once and checked for null.
+	 */
+	static Map<Object, MovieFrame> movieFrames = new ConcurrentHashMap<Object, MovieFrame>();
 	
 	public static MovieFrame viewMovie(String title, int[][][] rgbImage) {
-		MovieFrame mf = null;
-		if (movieFrames.containsKey(rgbImage)) {
-			mf = updateMovie(rgbImage);
+		MovieFrame mf = movieFrames.get(rgbImage);
+		if (mf != null) {
+			mf.updateCanvas();
 		} else {
 			mf = new MovieFrame(title, rgbImage);
 			movieFrames.put(rgbImage, mf);
-		}	
+		}
 		return mf;
 	}
 	
 	public static MovieFrame viewMovie(String title, int[][] grayScaleImage) {
-		MovieFrame mf = null;
-		if (movieFrames.containsKey(grayScaleImage)) {
-			mf = updateMovie(grayScaleImage);
+		MovieFrame mf = movieFrames.get(grayScaleImage);
+		if (mf != null) {
+			mf.updateCanvas();
 		} else {
 			mf = new MovieFrame(title, grayScaleImage);
 			movieFrames.put(grayScaleImage, mf);
@@ -593,24 +863,82 @@ public class Presenter {
 		return mf;
 	}
 	
+	/**
+	 * Shows a canvas as a movie. The frame of a FrameBuffer shares its
+	 * pixels, other canvases are copied into the frame, only the changed
+	 * region on every refresh.
+	 * 
+	 * @param title
+	 *            the title showing up in the title bar of the frame
+	 * @param canvas
+	 *            the canvas to show
+	 * @return the movie frame
+	 */
+	public static MovieFrame viewMovie(String title, PixelCanvas canvas) {
+		MovieFrame mf = movieFrames.get(canvas);
+		if (mf != null) {
+			mf.updateCanvas();
+		} else {
+			mf = new MovieFrame(title, canvas);
+			movieFrames.put(canvas, mf);
+		}
+		return mf;
+	}
+	
+	/**
+	 * Marks the movie as changed. The frame is refreshed by the next tick of
+	 * the refresh timer, so several updates between two ticks are presented
+	 * as one frame. This method never blocks.
+	 * 
+	 * @param mf
+	 *            the movie frame showing changed content
+	 * @return the movie frame
+	 */
 	public static MovieFrame updateMovie(MovieFrame mf) {
-		mf.updateCanvas();
+		mf.markStale();
+		if (movieFrameRate != FINAL_FRAME_ONLY && refreshTask == null) {
+			startRefreshTimer();
+		}
 		return mf;
 	}
 	
+	/**
+	 * Marks the movie of an RGB array as changed. The array is converted on
+	 * the refresh thread while the caller may go on drawing. A caller which
+	 * must not show partially drawn frames holds the monitor of the array
+	 * while it draws a frame, the conversion locks the array as well.
+	 * 
+	 * @param rgbImage
+	 *            the array shown by viewMovie
+	 * @return the movie frame, null if the array is not shown
+	 */
 	public static MovieFrame updateMovie(int[][][] rgbImage) {
-		MovieFrame mf = null;
-		if (movieFrames.containsKey(rgbImage)) {
-			mf = movieFrames.get(rgbImage);
+		MovieFrame mf = movieFrames.get(rgbImage);
+		if (mf != null) {
 			updateMovie(mf);
 		}
 		return mf;
 	}
 	
+	/**
+	 * Marks the movie of a gray-scale array as changed, see
+	 * {@link #updateMovie(int[][][])} for drawing frames without tearing.
+	 * 
+	 * @param grayScaleImage
+	 *            the array shown by viewMovie
+	 * @return the movie frame, null if the array is not shown
+	 */
 	public static MovieFrame updateMovie(int[][] grayScaleImage) {
-		MovieFrame mf = null;
-		if (movieFrames.containsKey(grayScaleImage)) {
-			mf = movieFrames.get(grayScaleImage);
+		MovieFrame mf = movieFrames.get(grayScaleImage);
+		if (mf != null) {
+			updateMovie(mf);
+		}
+		return mf;
+	}
+	
+	public static MovieFrame updateMovie(PixelCanvas canvas) {
+		MovieFrame mf = movieFrames.get(canvas);
+		if (mf != null) {
 			updateMovie(mf);
 		}
 		return mf;
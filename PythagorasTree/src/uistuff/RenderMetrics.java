@@ -0,0 +1,344 @@
+package uistuff;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * RenderMetrics counts the lines and pixels drawn by all
+ * {@link DrawingTurtle}s and the movie frames prepared by the
+ * {@link Presenter} together with the time the preparation took: converting
+ * an array, or copying the changed region of a canvas which does not share
+ * its pixels with the frame.
+ *
+ * Every thread counts into its own array, which only this thread writes, so
+ * recording needs neither locks nor atomic read-modify-write operations. The
+ * arrays of all threads are summed up when the metrics are read. The counts
+ * of terminated threads are folded into one array, so the number of arrays
+ * stays bounded by the number of live threads. While the
+ * metrics are disabled, which is the default unless the system property
+ * uistuff.metrics is true, recording costs a single read of a volatile flag.
+ *
+ * The metrics can be read by {@link #snapshot()} or, after
+ * {@link #register()}, through JMX.
+ *
+ * @version 1.0
+ */
+public class RenderMetrics implements RenderMetricsMBean {
+	private static final int LINES_DRAWN = 0;
+
+	private static final int PIXELS_WRITTEN = 1;
+
+	private static final int PIXELS_CLIPPED = 2;
+
+	private static final int FRAMES_CONVERTED = 3;
+
+	private static final int CONVERSION_NANOS = 4;
+
+	private static final int HISTOGRAM = 5;
+
+	private static final int SIZE = HISTOGRAM + 64;
+
+	static volatile boolean enabled = Boolean.getBoolean("uistuff.metrics");
+
+	/* the counts of one thread, which does not keep the thread alive */
+	private static class ThreadCounters {
+		final WeakReference<Thread> owner;
+
+		final AtomicLongArray counts = new AtomicLongArray(SIZE);
+
+		ThreadCounters(Thread owner) {
+			this.owner = new WeakReference<Thread>(owner);
+		}
+
+		boolean isRetired() {
+			Thread thread = owner.get();
+			return thread == null || !thread.isAlive();
+		}
+	}
+
+	/* the counters of the live threads which have recorded anything */
+	private static final List<ThreadCounters> counters = new ArrayList<ThreadCounters>();
+
+	/* the sums of the threads which have terminated */
+	private static final long[] retired = new long[SIZE];
+
+	private static final ThreadLocal<AtomicLongArray> localCounters = new ThreadLocal<AtomicLongArray>() {
+		protected AtomicLongArray initialValue() {
+			ThreadCounters local = new ThreadCounters(Thread.currentThread());
+			synchronized (counters) {
+				retireTerminated();
+				counters.add(local);
+			}
+			return local.counts;
+		}
+	};
+
+	/* subtracted from the sums, set by reset */
+	private static long[] baseline = new long[SIZE];
+
+	private static final RenderMetrics INSTANCE = new RenderMetrics();
+
+	private static boolean registered = false;
+
+	/**
+	 * An immutable copy of the metrics at one point in time.
+	 */
+	public static class Snapshot {
+		private final long[] values;
+
+		Snapshot(long[] values) {
+			this.values = values;
+		}
+
+		public long getLinesDrawn() {
+			return values[LINES_DRAWN];
+		}
+
+		public long getPixelsWritten() {
+			return values[PIXELS_WRITTEN];
+		}
+
+		public long getPixelsClipped() {
+			return values[PIXELS_CLIPPED];
+		}
+
+		public long getFramesConverted() {
+			return values[FRAMES_CONVERTED];
+		}
+
+		public long getConversionNanos() {
+			return values[CONVERSION_NANOS];
+		}
+
+		public double getMeanConversionMicros() {
+			long frames = getFramesConverted();
+			return frames == 0 ? 0 : getConversionNanos() / 1000.0 / frames;
+		}
+
+		/**
+		 * Returns the histogram of the frame conversion times, see
+		 * {@link RenderMetricsMBean#getConversionHistogram()}.
+		 *
+		 * @return a copy of the 64 counts
+		 */
+		public long[] getConversionHistogram() {
+			long[] histogram = new long[64];
+			System.arraycopy(values, HISTOGRAM, histogram, 0, 64);
+			return histogram;
+		}
+
+		/**
+		 * Returns an upper bound of the given percentile of the conversion
+		 * times, exact up to a factor of two.
+		 *
+		 * @param percentile
+		 *            the percentile between 0 and 100
+		 * @return the bound in nanoseconds, 0 if no frame has been converted
+		 */
+		public long getConversionPercentileNanos(double percentile) {
+			long frames = 0;
+			for (int i = 0; i < 64; i++) {
+				frames += values[HISTOGRAM + i];
+			}
+			long limit = (long) Math.ceil(frames * percentile / 100.0);
+			long count = 0;
+			for (int i = 0; i < 64; i++) {
+				count += values[HISTOGRAM + i];
+				if (count > 0 && count >= limit) {
+					return i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+				}
+			}
+			return 0;
+		}
+
+		public String toString() {
+			return "lines " + getLinesDrawn() + ", pixels written "
+					+ getPixelsWritten() + ", pixels clipped "
+					+ getPixelsClipped() + ", frames " + getFramesConverted()
+					+ ", mean conversion " + getMeanConversionMicros() + " us";
+		}
+	}
+
+	private RenderMetrics() {
+	}
+
+	/**
+	 * Returns the instance registered with JMX.
+	 *
+	 * @return the management interface of the metrics
+	 */
+	public static RenderMetricsMBean getMBean() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server as
+	 * uistuff:type=RenderMetrics. Further calls do nothing.
+	 *
+	 * @throws IllegalStateException
+	 *             if the registration fails
+	 */
+	public static synchronized void register() {
+		if (registered) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(INSTANCE, new ObjectName(
+					"uistuff:type=RenderMetrics"));
+			registered = true;
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register render metrics",
+					e);
+		}
+	}
+
+	public static void enable(boolean enabled) {
+		RenderMetrics.enabled = enabled;
+	}
+
+	/**
+	 * Sums up the counters of all threads.
+	 *
+	 * @return the current metrics
+	 */
+	public static Snapshot snapshot() {
+		long[] sums = new long[SIZE];
+		synchronized (counters) {
+			retireTerminated();
+			for (int i = 0; i < counters.size(); i++) {
+				AtomicLongArray array = counters.get(i).counts;
+				for (int j = 0; j < SIZE; j++) {
+					sums[j] += array.get(j);
+				}
+			}
+			for (int j = 0; j < SIZE; j++) {
+				sums[j] += retired[j] - baseline[j];
+			}
+		}
+		return new Snapshot(sums);
+	}
+
+	/*
+	 * Adds the counts of terminated threads to the retired sums and drops
+	 * their arrays. A terminated thread writes no more counts, so none are
+	 * lost. Called with the lock of the list held.
+	 */
+	private static void retireTerminated() {
+		Iterator<ThreadCounters> i = counters.iterator();
+		while (i.hasNext()) {
+			ThreadCounters candidate = i.next();
+			if (candidate.isRetired()) {
+				for (int j = 0; j < SIZE; j++) {
+					retired[j] += candidate.counts.get(j);
+				}
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Sets all metrics to zero. Counts recorded concurrently may be lost.
+	 */
+	public static void resetAll() {
+		Snapshot current = snapshot();
+		synchronized (counters) {
+			for (int j = 0; j < SIZE; j++) {
+				baseline[j] += current.values[j];
+			}
+		}
+	}
+
+	/**
+	 * Records a line. Callers check {@link #enabled} first.
+	 *
+	 * @param pixels
+	 *            the number of pixels of the whole line
+	 * @param written
+	 *            the number of pixels inside the clip region
+	 */
+	static void recordLine(long pixels, long written) {
+		AtomicLongArray array = localCounters.get();
+		add(array, LINES_DRAWN, 1);
+		add(array, PIXELS_WRITTEN, written);
+		add(array, PIXELS_CLIPPED, pixels - written);
+	}
+
+	/**
+	 * Records single pixels. Callers check {@link #enabled} first.
+	 *
+	 * @param written
+	 *            the number of pixels inside the clip region
+	 * @param clipped
+	 *            the number of pixels outside the clip region
+	 */
+	static void recordPixels(long written, long clipped) {
+		AtomicLongArray array = localCounters.get();
+		add(array, PIXELS_WRITTEN, written);
+		add(array, PIXELS_CLIPPED, clipped);
+	}
+
+	/**
+	 * Records the preparation of a movie frame. Callers check
+	 * {@link #enabled} first.
+	 *
+	 * @param nanos
+	 *            the time the conversion or copy took
+	 */
+	static void recordFrame(long nanos) {
+		AtomicLongArray array = localCounters.get();
+		add(array, FRAMES_CONVERTED, 1);
+		add(array, CONVERSION_NANOS, nanos);
+		int bucket = nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+		add(array, HISTOGRAM + bucket, 1);
+	}
+
+	/* only the owning thread writes, so an ordered store is sufficient */
+	private static void add(AtomicLongArray array, int index, long delta) {
+		array.lazySet(index, array.get(index) + delta);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		enable(enabled);
+	}
+
+	public long getLinesDrawn() {
+		return snapshot().getLinesDrawn();
+	}
+
+	public long getPixelsWritten() {
+		return snapshot().getPixelsWritten();
+	}
+
+	public long getPixelsClipped() {
+		return snapshot().getPixelsClipped();
+	}
+
+	public long getFramesConverted() {
+		return snapshot().getFramesConverted();
+	}
+
+	public double getMeanConversionMicros() {
+		return snapshot().getMeanConversionMicros();
+	}
+
+	public long[] getConversionHistogram() {
+		return snapshot().getConversionHistogram();
+	}
+
+	public void reset() {
+		resetAll();
+	}
+}
@@ -0,0 +1,34 @@
+package uistuff;
+
+/**
+ * Management interface of the {@link RenderMetrics}, registered as
+ * uistuff:type=RenderMetrics.
+ *
+ * @version 1.0
+ */
+public interface RenderMetricsMBean {
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getLinesDrawn();
+
+	long getPixelsWritten();
+
+	long getPixelsClipped();
+
+	long getFramesConverted();
+
+	double getMeanConversionMicros();
+
+	/**
+	 * Returns the histogram of the frame conversion times. Entry i counts the
+	 * conversions which took at least 2^i and less than 2^(i+1) nanoseconds,
+	 * entry 0 includes the conversions faster than a nanosecond.
+	 *
+	 * @return the 64 counts of the histogram
+	 */
+	long[] getConversionHistogram();
+
+	void reset();
+}
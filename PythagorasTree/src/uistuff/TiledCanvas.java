@@ -0,0 +1,216 @@
+package uistuff;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A TiledCanvas splits its pixels into square tiles of 256x256 packed ARGB
+ * values. A tile is allocated when a pixel of it is set to a color different
+ * from the background for the first time, all other tiles only exist
+ * implicitly. The memory needed therefore grows with the drawn pixels and not
+ * with the area of the canvas, which allows canvases far larger than the
+ * heap as long as most of them stays empty.
+ *
+ * Tiles are allocated with a compare-and-set, so disjoint regions of the
+ * canvas may be drawn by several threads at once.
+ *
+ * @version 1.0
+ */
+public class TiledCanvas extends PixelCanvas {
+	static final int TILE_SHIFT = 8;
+
+	static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+	static final int TILE_MASK = TILE_SIZE - 1;
+
+	private final int tilesX;
+
+	private final int tilesY;
+
+	private final AtomicReferenceArray<int[]> tiles;
+
+	private volatile int background;
+
+	/**
+	 * Creates a new tiled canvas. All pixels show the background color, no
+	 * tile is allocated.
+	 *
+	 * @param width
+	 *            the number of pixels per row
+	 * @param height
+	 *            the number of rows
+	 * @param background
+	 *            the packed ARGB color of all pixels not drawn yet
+	 */
+	public TiledCanvas(int width, int height, int background) {
+		super(width, height);
+		this.tilesX = (width + TILE_MASK) >> TILE_SHIFT;
+		this.tilesY = (height + TILE_MASK) >> TILE_SHIFT;
+		if ((long) tilesX * tilesY > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Tiled canvas " + width + "x"
+					+ height + " is too large");
+		}
+		this.tiles = new AtomicReferenceArray<int[]>(tilesX * tilesY);
+		this.background = background;
+	}
+
+	public int getBackground() {
+		return background;
+	}
+
+	public int getPixel(int x, int y) {
+		int[] tile = tiles.get((y >> TILE_SHIFT) * tilesX + (x >> TILE_SHIFT));
+		if (tile == null) {
+			return background;
+		}
+		return tile[((y & TILE_MASK) << TILE_SHIFT) + (x & TILE_MASK)];
+	}
+
+	public void setPixel(int x, int y, int argb) {
+		int[] tile = tile(x >> TILE_SHIFT, y >> TILE_SHIFT, argb);
+		if (tile != null) {
+			tile[((y & TILE_MASK) << TILE_SHIFT) + (x & TILE_MASK)] = argb;
+		}
+	}
+
+	public void fillSpan(int y, int x0, int x1, int argb) {
+		int ty = y >> TILE_SHIFT;
+		int rowOffset = (y & TILE_MASK) << TILE_SHIFT;
+
+		while (x0 < x1) {
+			int tx = x0 >> TILE_SHIFT;
+			int end = Math.min(x1, (tx + 1) << TILE_SHIFT);
+			int[] tile = tile(tx, ty, argb);
+			if (tile != null) {
+				Arrays.fill(tile, rowOffset + (x0 & TILE_MASK), rowOffset
+						+ ((end - 1) & TILE_MASK) + 1, argb);
+			}
+			x0 = end;
+		}
+	}
+
+	public void getRow(int y, int x, int count, int[] destination, int offset) {
+		int ty = y >> TILE_SHIFT;
+		int rowOffset = (y & TILE_MASK) << TILE_SHIFT;
+		int end = x + count;
+
+		while (x < end) {
+			int tx = x >> TILE_SHIFT;
+			int n = Math.min(end, (tx + 1) << TILE_SHIFT) - x;
+			int[] tile = tiles.get(ty * tilesX + tx);
+			if (tile == null) {
+				Arrays.fill(destination, offset, offset + n, background);
+			} else {
+				System.arraycopy(tile, rowOffset + (x & TILE_MASK),
+						destination, offset, n);
+			}
+			x += n;
+			offset += n;
+		}
+	}
+
+	/**
+	 * Fills a rectangle. A rectangle covering the whole canvas only resets
+	 * the background, see {@link #fill(int)}.
+	 */
+	public void fillRect(int x0, int y0, int x1, int y1, int argb) {
+		if (x0 == 0 && y0 == 0 && x1 == width && y1 == height) {
+			fill(argb);
+		} else {
+			super.fillRect(x0, y0, x1, y1, argb);
+		}
+	}
+
+	/**
+	 * Sets every pixel of the canvas to the given color. The color becomes
+	 * the new background and all tiles are released.
+	 *
+	 * @param argb
+	 *            the packed color
+	 */
+	public void fill(int argb) {
+		background = argb;
+		for (int i = 0; i < tiles.length(); i++) {
+			tiles.set(i, null);
+		}
+		markDirty(0, 0, width - 1, height - 1);
+	}
+
+	/**
+	 * Returns the number of tiles currently holding pixels.
+	 *
+	 * @return the number of allocated tiles
+	 */
+	public int getAllocatedTileCount() {
+		int count = 0;
+		for (int i = 0; i < tiles.length(); i++) {
+			if (tiles.get(i) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Writes every allocated tile as PNG file named tile_&lt;column&gt;_&lt;row&gt;.png
+	 * into a directory, where column and row count tiles from the upper left
+	 * corner. Tiles showing only the background are not written. Tiles at the
+	 * right and bottom border are cut to the size of the canvas.
+	 *
+	 * @param directory
+	 *            the existing directory receiving the files
+	 * @return the number of files written
+	 * @throws IOException
+	 *             if a file cannot be written
+	 */
+	public int writeTiles(File directory) throws IOException {
+		int written = 0;
+		for (int ty = 0; ty < tilesY; ty++) {
+			for (int tx = 0; tx < tilesX; tx++) {
+				if (tiles.get(ty * tilesX + tx) == null) {
+					continue;
+				}
+				int x = tx << TILE_SHIFT;
+				int y = ty << TILE_SHIFT;
+				OutputStream out = new BufferedOutputStream(
+						new FileOutputStream(new File(directory, "tile_" + tx
+								+ "_" + ty + ".png")));
+				try {
+					ImageExporter.writePNG(this, x, y, Math.min(TILE_SIZE,
+							width - x), Math.min(TILE_SIZE, height - y), out);
+				} finally {
+					out.close();
+				}
+				written++;
+			}
+		}
+		return written;
+	}
+
+	/*
+	 * Returns the tile at the given tile coordinates. A missing tile is
+	 * allocated unless the color to write is the background, in which case
+	 * null is returned as there is nothing to change.
+	 */
+	private int[] tile(int tx, int ty, int argb) {
+		int index = ty * tilesX + tx;
+		int[] tile = tiles.get(index);
+		if (tile == null) {
+			int background = this.background;
+			if (argb == background) {
+				return null;
+			}
+			tile = new int[TILE_SIZE * TILE_SIZE];
+			Arrays.fill(tile, background);
+			if (!tiles.compareAndSet(index, null, tile)) {
+				tile = tiles.get(index);
+			}
+		}
+		return tile;
+	}
+}
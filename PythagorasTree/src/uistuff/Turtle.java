@@ -1,165 +1,147 @@
 package uistuff;
 
 import java.awt.Color;
+import java.io.IOException;
 
 /**
+ * Static turtle graphics. All methods forward to one default
+ * {@link DrawingTurtle} drawing into the frame buffer returned by
+ * {@link #getCanvas()}. Programs which need more than one turtle, or which
+ * draw from several threads, create their own DrawingTurtle instances.
+ * 
  * @author Volker Christian (volker.christian@fh-hagenberg.at)
  * @version 1.0
  */
 
 public class Turtle {
-	static int[][][] picture = new int[300][300][3];
+	static FrameBuffer picture = new FrameBuffer(300, 300);
+	static DrawingTurtle turtle = new DrawingTurtle(picture);
 	static {
 		erase();
 		
 	}
 	
-	static double x = 0;
-	static double y = 0;
-	static int angle = 0;
-	static int stepWidth = 1;
-	static Color color = Color.BLACK;
-	static boolean isDrawing = true;
-	
 	protected static void putPixel(int x, int y) {
-		int yMax = picture.length;
-		
-		if (yMax - y - 1 < 0 || 
-				yMax - y - 1 >= picture.length ||
-				x < 0 ||
-				x >= picture[0].length ||
-				!isDrawing) {
-			return;
-		}
-		
-		picture[yMax - y - 1][x][0] = color.getRed();
-		picture[yMax - y - 1][x][1] = color.getGreen();
-		picture[yMax - y - 1][x][2] = color.getBlue();
+		turtle.putPixel(x, y);
 	}
 	
 	
 	protected static void drawLine(int x1, int y1, int x2, int y2) {
-		int x = x1, y = y1, d = 0, hx = x2 - x1, hy = y2 - y1;
-		int xInc = 1;
-		int yInc = 1;
-		
-		if (hx < 0) {
-			xInc = -1;
-			hx = -hx;
-		}
-		if (hy < 0) {
-			yInc = -1;
-			hy = -hy;
-		}
-		if (hy <= hx) {
-			int c = 2 * hx;
-			int k = 2 * hy;
-			
-			while (true) {
-				putPixel(x, y);
-				if (x == x2) {
-					break;
-				}
-				x += xInc;
-				d += k;
-				if (d > hx) {
-					y += yInc;
-					d -= c;
-				}
-			}
-		} else {
-			int c = 2 * hy;
-			int k = 2 * hx;
-			
-			while (true) {
-				putPixel(x, y);
-				if (y == y2) {
-					break;
-				}
-				y += yInc;
-				d += k;
-				if (d > hy) {
-					x += xInc;
-					d -= c;
-				}
-			}
-		}
+		turtle.drawLine(x1, y1, x2, y2);
 	}
 	
 	
 	public static void forward(double n) {
-		double xn = x + n * stepWidth * Math.cos(2.0 * Math.PI * angle / 360.0);
-		double yn = y + n * stepWidth * Math.sin(2.0 * Math.PI * angle / 360.0);
-		
-		drawLine(
-				(int) Math.round(x), 
-				(int) Math.round(y), 
-				(int) Math.round(xn), 
-				(int) Math.round(yn));
-		x = xn;
-		y = yn;
-	
-		Presenter.updateMovie(picture);
+		turtle.forward(n);
 	}
 	
 	
 	public static void setPos(int x, int y) {
-		Turtle.x = x;
-		Turtle.y = y;
+		turtle.setPos(x, y);
 	}
 	
 	
-	public static void setAngle(int angle) {
-		Turtle.angle = angle;
+	public static void setAngle(double angle) {
+		turtle.setAngle(angle);
 	}
 	
 	
 	public static void stepWidth(int width) {
-		Turtle.stepWidth = width;
+		turtle.stepWidth(width);
 	}
 	
 	
-	public static void left(int angel) {
-		Turtle.angle += angel;
+	public static void left(double angel) {
+		turtle.left(angel);
 	}
 	
 	
-	public static void right(int angel) {
-		Turtle.angle -= angel;
+	public static void right(double angel) {
+		turtle.right(angel);
 	}
 	
 	
 	public static void setColor(Color color) {
-		Turtle.color = color;
+		turtle.setColor(color);
+	}
+	
+	
+	public static void setCanvasSize(int width, int height) {
+		picture = new FrameBuffer(width, height);
+		turtle = new DrawingTurtle(picture);
+		erase();
+	}
+	
+	
+	public static FrameBuffer getCanvas() {
+		return picture;
+	}
+	
+	
+	public static DrawingTurtle getTurtle() {
+		return turtle;
+	}
+	
+	
+	public static void beginFill() {
+		turtle.beginFill();
+	}
+	
+	
+	public static void endFill() {
+		turtle.endFill();
+	}
+	
+	
+	public static void pushState() {
+		turtle.pushState();
+	}
+	
+	
+	public static void popState() {
+		turtle.popState();
+	}
+	
+	
+	public static void startRecording() {
+		turtle.startRecording();
+	}
+	
+	
+	public static TurtleProgram stopRecording() {
+		return turtle.stopRecording();
+	}
+	
+	
+	public static void flush() {
+		turtle.flush();
 	}
 	
 	
 	public static void showGraphics(String title) {
-		Presenter.viewImage(title, picture);
+		turtle.showGraphics(title);
 	}
 	
 	public static void showMovie(String title) {
-		Presenter.viewMovie(title, picture);
+		turtle.showMovie(title);
+	}
+	
+	
+	public static void saveGraphics(String fileName) throws IOException {
+		turtle.saveGraphics(fileName);
 	}
 	
 	
 	public static void penUp() {
-		Turtle.isDrawing = false;
+		turtle.penUp();
 	}
 	
 	
 	public static void penDown() {
-		Turtle.isDrawing = true;
+		turtle.penDown();
 	}
 	
 	public static void erase() {
-		for (int y = 0; y < picture.length; y++) {
-			for (int x = 0; x < picture[0].length; x++) {
-				picture[y][x][0] = 255;
-				picture[y][x][1] = 255;
-				picture[y][x][2] = 255;
-			}
-		}
-		
+		turtle.erase();
 	}
 }
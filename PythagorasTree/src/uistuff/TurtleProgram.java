@@ -0,0 +1,232 @@
+package uistuff;
+
+import java.util.Arrays;
+
+/**
+ * A TurtleProgram is a recorded sequence of turtle commands. The commands are
+ * stored as one byte opcode each, their arguments are stored in a separate
+ * array of doubles, so recording does not create an object per command.
+ *
+ * A program can be replayed on any {@link DrawingTurtle}, optionally scaled,
+ * which allows to draw a figure at a different resolution without running
+ * the code which generated it again.
+ *
+ * @version 1.0
+ */
+public class TurtleProgram {
+	static final byte FORWARD = 0;
+
+	static final byte LEFT = 1;
+
+	static final byte RIGHT = 2;
+
+	static final byte SET_COLOR = 3;
+
+	static final byte PEN_UP = 4;
+
+	static final byte PEN_DOWN = 5;
+
+	static final byte SET_POS = 6;
+
+	static final byte SET_ANGLE = 7;
+
+	static final byte STEP_WIDTH = 8;
+
+	static final byte BEGIN_FILL = 9;
+
+	static final byte END_FILL = 10;
+
+	static final byte PUSH_STATE = 11;
+
+	static final byte POP_STATE = 12;
+
+	private byte[] opcodes = new byte[64];
+
+	private int size = 0;
+
+	private double[] operands = new double[64];
+
+	private int operandCount = 0;
+
+	public void forward(double n) {
+		append(FORWARD);
+		operand(n);
+	}
+
+	public void left(double angle) {
+		append(LEFT);
+		operand(angle);
+	}
+
+	public void right(double angle) {
+		append(RIGHT);
+		operand(angle);
+	}
+
+	public void setColor(int argb) {
+		append(SET_COLOR);
+		operand(argb);
+	}
+
+	public void penUp() {
+		append(PEN_UP);
+	}
+
+	public void penDown() {
+		append(PEN_DOWN);
+	}
+
+	public void setPos(double x, double y) {
+		append(SET_POS);
+		operand(x);
+		operand(y);
+	}
+
+	public void setAngle(double angle) {
+		append(SET_ANGLE);
+		operand(angle);
+	}
+
+	public void stepWidth(int width) {
+		append(STEP_WIDTH);
+		operand(width);
+	}
+
+	public void beginFill() {
+		append(BEGIN_FILL);
+	}
+
+	public void endFill() {
+		append(END_FILL);
+	}
+
+	public void pushState() {
+		append(PUSH_STATE);
+	}
+
+	public void popState() {
+		append(POP_STATE);
+	}
+
+	/**
+	 * Returns the number of recorded commands.
+	 *
+	 * @return the number of commands
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all recorded commands. The allocated buffers are kept.
+	 */
+	public void clear() {
+		size = 0;
+		operandCount = 0;
+	}
+
+	/**
+	 * Executes all recorded commands on the given turtle.
+	 *
+	 * @param turtle
+	 *            the turtle executing the commands
+	 */
+	public void replay(DrawingTurtle turtle) {
+		replay(turtle, 1.0);
+	}
+
+	/**
+	 * Executes all recorded commands on the given turtle. All positions and
+	 * distances are multiplied by the scale, angles are kept. The movie of the
+	 * canvas of the turtle is updated once after the last command.
+	 *
+	 * @param turtle
+	 *            the turtle executing the commands
+	 * @param scale
+	 *            the factor applied to positions and distances
+	 */
+	public void replay(DrawingTurtle turtle, double scale) {
+		replay(turtle, scale, 0, 0);
+	}
+
+	/**
+	 * Returns the number of operands of all recorded commands, the position
+	 * of the operands of the next command appended.
+	 */
+	int operandCount() {
+		return operandCount;
+	}
+
+	/*
+	 * Executes the commands from the given command on, whose operands start
+	 * at the given operand.
+	 */
+	void replay(DrawingTurtle turtle, double scale, int first, int firstOperand) {
+		int k = firstOperand;
+
+		for (int i = first; i < size; i++) {
+			switch (opcodes[i]) {
+			case FORWARD:
+				turtle.move(operands[k++] * scale);
+				break;
+			case LEFT:
+				turtle.turn(operands[k++]);
+				break;
+			case RIGHT:
+				turtle.turn(-operands[k++]);
+				break;
+			case SET_COLOR:
+				turtle.setARGB((int) operands[k++]);
+				break;
+			case PEN_UP:
+				turtle.setDrawing(false);
+				break;
+			case PEN_DOWN:
+				turtle.setDrawing(true);
+				break;
+			case SET_POS:
+				turtle.setPosition(operands[k] * scale, operands[k + 1]
+						* scale);
+				k += 2;
+				break;
+			case SET_ANGLE:
+				turtle.setHeading(operands[k++]);
+				break;
+			case STEP_WIDTH:
+				turtle.setStepWidth((int) operands[k++]);
+				break;
+			case BEGIN_FILL:
+				turtle.startFill();
+				break;
+			case END_FILL:
+				turtle.finishFill();
+				break;
+			case PUSH_STATE:
+				turtle.saveState();
+				break;
+			case POP_STATE:
+				turtle.restoreState();
+				break;
+			default:
+				throw new IllegalStateException("Unknown opcode "
+						+ opcodes[i]);
+			}
+		}
+
+		Presenter.updateMovie(turtle.getCanvas());
+	}
+
+	private void append(byte opcode) {
+		if (size == opcodes.length) {
+			opcodes = Arrays.copyOf(opcodes, 2 * size);
+		}
+		opcodes[size++] = opcode;
+	}
+
+	private void operand(double value) {
+		if (operandCount == operands.length) {
+			operands = Arrays.copyOf(operands, 2 * operandCount);
+		}
+		operands[operandCount++] = value;
+	}
+}
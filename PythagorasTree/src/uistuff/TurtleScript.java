@@ -0,0 +1,791 @@
+package uistuff;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A TurtleScript is a program written in a small Logo like language, compiled
+ * into a flat array of integer opcodes which is executed by a stack machine.
+ * Example:
+ *
+ * <pre>
+ * ; a tree drawn by a recursive procedure
+ * to tree :length :depth
+ *   if :depth = 0 [ stop ]
+ *   fd :length
+ *   lt 30 tree :length * 0.7 :depth - 1
+ *   rt 60 tree :length * 0.7 :depth - 1
+ *   lt 30 bk :length
+ * end
+ *
+ * setpos 150 10 setangle 90
+ * repeat 3 [ tree 60 8 ]
+ * </pre>
+ *
+ * The commands are fd (forward), bk (back), lt (left), rt (right), pu
+ * (penup), pd (pendown), setpos x y, setangle a, color r g b, push and pop
+ * (pushState and popState of the turtle), repeat n [ ... ], if c [ ... ],
+ * ifelse c [ ... ] [ ... ] and stop, which leaves the current procedure.
+ * Procedures are defined with to ... end and may be called before their
+ * definition. Expressions consist of numbers, parameters, the operators
+ * + - * / and the comparisons = &lt;&gt; &lt; &gt; &lt;= &gt;=, which yield
+ * 1 or 0. Arguments are separated by white space only, therefore a minus
+ * following an operand always subtracts; a negative argument after another
+ * argument has to be put into parentheses. Comments run from ; to the end of
+ * the line.
+ *
+ * The interpreter allocates its stacks once per run and only grows them for
+ * deep recursion, so executing a program creates no garbage apart from the
+ * colors set by the color command.
+ *
+ * @version 1.0
+ */
+public class TurtleScript {
+	static final int HALT = 0;
+
+	static final int CONST = 1;
+
+	static final int LOAD = 2;
+
+	static final int ADD = 3;
+
+	static final int SUB = 4;
+
+	static final int MUL = 5;
+
+	static final int DIV = 6;
+
+	static final int NEG = 7;
+
+	static final int EQ = 8;
+
+	static final int NE = 9;
+
+	static final int LT = 10;
+
+	static final int GT = 11;
+
+	static final int LE = 12;
+
+	static final int GE = 13;
+
+	static final int JUMP = 14;
+
+	static final int JUMP_IF_FALSE = 15;
+
+	static final int INIT_LOOP = 16;
+
+	static final int LOOP = 17;
+
+	static final int CALL = 18;
+
+	static final int RETURN = 19;
+
+	static final int FORWARD = 20;
+
+	static final int BACK = 21;
+
+	static final int LEFT = 22;
+
+	static final int RIGHT = 23;
+
+	static final int PEN_UP = 24;
+
+	static final int PEN_DOWN = 25;
+
+	static final int SET_POS = 26;
+
+	static final int SET_ANGLE = 27;
+
+	static final int SET_COLOR = 28;
+
+	static final int PUSH_STATE = 29;
+
+	static final int POP_STATE = 30;
+
+	/* variants of the commands above taking a constant argument */
+	static final int FORWARD_CONST = 31;
+
+	static final int BACK_CONST = 32;
+
+	static final int LEFT_CONST = 33;
+
+	static final int RIGHT_CONST = 34;
+
+	static final int SET_ANGLE_CONST = 35;
+
+	private static final int MAX_CALL_DEPTH = 1 << 20;
+
+	private final int[] code;
+
+	private final double[] constants;
+
+	/* address, parameter count and local slot count of every procedure */
+	private final int[] procedureAddresses;
+
+	private final int[] procedureArities;
+
+	private final int[] procedureLocals;
+
+	private final int mainLocals;
+
+	/* the deepest expression stack needed by a single statement */
+	private final int maxExpressionDepth;
+
+	private TurtleScript(Compiler compiler) {
+		this.code = Arrays.copyOf(compiler.code, compiler.codeSize);
+		this.constants = Arrays.copyOf(compiler.constants,
+				compiler.constantCount);
+		int n = compiler.procedures.size();
+		this.procedureAddresses = new int[n];
+		this.procedureArities = new int[n];
+		this.procedureLocals = new int[n];
+		for (int i = 0; i < n; i++) {
+			Procedure procedure = compiler.procedures.get(i);
+			procedureAddresses[i] = procedure.address;
+			procedureArities[i] = procedure.parameters.size();
+			procedureLocals[i] = procedure.locals;
+		}
+		this.mainLocals = compiler.mainLocals;
+		this.maxExpressionDepth = compiler.maxDepth;
+	}
+
+	/**
+	 * Compiles a program.
+	 *
+	 * @param source
+	 *            the text of the program
+	 * @return the compiled program
+	 * @throws IllegalArgumentException
+	 *             if the program contains an error, the message names the
+	 *             line
+	 */
+	public static TurtleScript compile(String source) {
+		Compiler compiler = new Compiler(source);
+		compiler.compile();
+		return new TurtleScript(compiler);
+	}
+
+	/**
+	 * Returns the number of integers of the compiled code.
+	 *
+	 * @return the code size
+	 */
+	public int getCodeSize() {
+		return code.length;
+	}
+
+	/**
+	 * Runs the program with the turtle of {@link Turtle}.
+	 */
+	public void run() {
+		run(Turtle.getTurtle());
+	}
+
+	/**
+	 * Runs the program with the given turtle, starting at its current
+	 * position and heading.
+	 *
+	 * @param turtle
+	 *            the turtle executing the commands
+	 * @throws IllegalStateException
+	 *             if the procedure calls nest too deep
+	 */
+	public void run(DrawingTurtle turtle) {
+		final int[] code = this.code;
+		final double[] constants = this.constants;
+		double[] values = new double[Math.max(256, mainLocals
+				+ maxExpressionDepth)];
+		/* return address and frame pointer of every active call */
+		int[] calls = new int[64];
+		int callCount = 0;
+
+		int pc = 0;
+		int fp = 0;
+		int sp = mainLocals;
+
+		for (;;) {
+			switch (code[pc++]) {
+			case HALT:
+				Presenter.updateMovie(turtle.getCanvas());
+				return;
+			case CONST:
+				values[sp++] = constants[code[pc++]];
+				break;
+			case LOAD:
+				values[sp++] = values[fp + code[pc++]];
+				break;
+			case ADD:
+				sp--;
+				values[sp - 1] += values[sp];
+				break;
+			case SUB:
+				sp--;
+				values[sp - 1] -= values[sp];
+				break;
+			case MUL:
+				sp--;
+				values[sp - 1] *= values[sp];
+				break;
+			case DIV:
+				sp--;
+				values[sp - 1] /= values[sp];
+				break;
+			case NEG:
+				values[sp - 1] = -values[sp - 1];
+				break;
+			case EQ:
+				sp--;
+				values[sp - 1] = values[sp - 1] == values[sp] ? 1 : 0;
+				break;
+			case NE:
+				sp--;
+				values[sp - 1] = values[sp - 1] != values[sp] ? 1 : 0;
+				break;
+			case LT:
+				sp--;
+				values[sp - 1] = values[sp - 1] < values[sp] ? 1 : 0;
+				break;
+			case GT:
+				sp--;
+				values[sp - 1] = values[sp - 1] > values[sp] ? 1 : 0;
+				break;
+			case LE:
+				sp--;
+				values[sp - 1] = values[sp - 1] <= values[sp] ? 1 : 0;
+				break;
+			case GE:
+				sp--;
+				values[sp - 1] = values[sp - 1] >= values[sp] ? 1 : 0;
+				break;
+			case JUMP:
+				pc = code[pc];
+				break;
+			case JUMP_IF_FALSE:
+				if (values[--sp] == 0) {
+					pc = code[pc];
+				} else {
+					pc++;
+				}
+				break;
+			case INIT_LOOP:
+				/* the counter holds the number of passes left */
+				values[fp + code[pc++]] = Math.floor(values[--sp]);
+				break;
+			case LOOP: {
+				/* placed behind the loop body, jumps back while passes are left */
+				int counter = fp + code[pc++];
+				if (values[counter] >= 1) {
+					values[counter]--;
+					pc = code[pc];
+				} else {
+					pc++;
+				}
+				break;
+			}
+			case CALL: {
+				int procedure = code[pc++];
+				if (callCount == calls.length) {
+					if (callCount >= 2 * MAX_CALL_DEPTH) {
+						throw new IllegalStateException(
+								"Procedure calls nested too deep");
+					}
+					calls = Arrays.copyOf(calls, 2 * callCount);
+				}
+				calls[callCount++] = pc;
+				calls[callCount++] = fp;
+				fp = sp - procedureArities[procedure];
+				sp = fp + procedureLocals[procedure];
+				if (sp + maxExpressionDepth > values.length) {
+					values = Arrays.copyOf(values, 2 * (sp + maxExpressionDepth));
+				}
+				pc = procedureAddresses[procedure];
+				break;
+			}
+			case RETURN:
+				sp = fp;
+				fp = calls[--callCount];
+				pc = calls[--callCount];
+				break;
+			case FORWARD:
+				turtle.forward(values[--sp]);
+				break;
+			case BACK:
+				turtle.forward(-values[--sp]);
+				break;
+			case LEFT:
+				turtle.left(values[--sp]);
+				break;
+			case RIGHT:
+				turtle.right(values[--sp]);
+				break;
+			case PEN_UP:
+				turtle.penUp();
+				break;
+			case PEN_DOWN:
+				turtle.penDown();
+				break;
+			case SET_POS:
+				sp -= 2;
+				turtle.setPos(values[sp], values[sp + 1]);
+				break;
+			case SET_ANGLE:
+				turtle.setAngle(values[--sp]);
+				break;
+			case SET_COLOR:
+				sp -= 3;
+				turtle.setColor(new Color(channel(values[sp]),
+						channel(values[sp + 1]), channel(values[sp + 2])));
+				break;
+			case PUSH_STATE:
+				turtle.pushState();
+				break;
+			case POP_STATE:
+				turtle.popState();
+				break;
+			case FORWARD_CONST:
+				turtle.forward(constants[code[pc++]]);
+				break;
+			case BACK_CONST:
+				turtle.forward(-constants[code[pc++]]);
+				break;
+			case LEFT_CONST:
+				turtle.left(constants[code[pc++]]);
+				break;
+			case RIGHT_CONST:
+				turtle.right(constants[code[pc++]]);
+				break;
+			case SET_ANGLE_CONST:
+				turtle.setAngle(constants[code[pc++]]);
+				break;
+			default:
+				throw new IllegalStateException("Unknown opcode "
+						+ code[pc - 1]);
+			}
+		}
+	}
+
+	private static int channel(double value) {
+		return (int) Math.max(0, Math.min(255, value));
+	}
+
+	private static class Procedure {
+		final List<String> parameters = new ArrayList<String>();
+
+		/* token index of the first statement and of the closing end */
+		int bodyStart;
+
+		int bodyEnd;
+
+		int address;
+
+		int locals;
+	}
+
+	/*
+	 * Compiles in two passes: the first one collects the procedures, so they
+	 * can be called before their definition, the second one generates the
+	 * main program followed by the procedures.
+	 */
+	private static class Compiler {
+		private static final Map<String, Integer> COMMANDS = new HashMap<String, Integer>();
+
+		private static final Map<String, Integer> ARITIES = new HashMap<String, Integer>();
+
+		static {
+			command(FORWARD, 1, "fd", "forward");
+			command(BACK, 1, "bk", "back");
+			command(LEFT, 1, "lt", "left");
+			command(RIGHT, 1, "rt", "right");
+			command(PEN_UP, 0, "pu", "penup");
+			command(PEN_DOWN, 0, "pd", "pendown");
+			command(SET_POS, 2, "setpos");
+			command(SET_ANGLE, 1, "setangle", "seth");
+			command(SET_COLOR, 3, "color");
+			command(PUSH_STATE, 0, "push");
+			command(POP_STATE, 0, "pop");
+		}
+
+		private static void command(int opcode, int arity, String... names) {
+			for (int i = 0; i < names.length; i++) {
+				COMMANDS.put(names[i], opcode);
+				ARITIES.put(names[i], arity);
+			}
+		}
+
+		final List<String> tokens = new ArrayList<String>();
+
+		final List<Integer> lines = new ArrayList<Integer>();
+
+		final List<Procedure> procedures = new ArrayList<Procedure>();
+
+		final Map<String, Procedure> procedureNames = new HashMap<String, Procedure>();
+
+		int[] code = new int[256];
+
+		int codeSize = 0;
+
+		double[] constants = new double[32];
+
+		int constantCount = 0;
+
+		int mainLocals;
+
+		int maxDepth = 0;
+
+		private int position;
+
+		/* the procedure being compiled, null for the main program */
+		private Procedure current;
+
+		private int locals;
+
+		private int depth;
+
+		Compiler(String source) {
+			tokenize(source);
+		}
+
+		void compile() {
+			collectProcedures();
+
+			position = 0;
+			current = null;
+			locals = 0;
+			while (position < tokens.size()) {
+				if (peek().equals("to")) {
+					position = procedureNames.get(tokens.get(position + 1)).bodyEnd + 1;
+				} else {
+					statement();
+				}
+			}
+			emit(HALT);
+			mainLocals = locals;
+
+			for (int i = 0; i < procedures.size(); i++) {
+				current = procedures.get(i);
+				current.address = codeSize;
+				locals = current.parameters.size();
+				position = current.bodyStart;
+				while (position < current.bodyEnd) {
+					statement();
+				}
+				emit(RETURN);
+				current.locals = locals;
+			}
+		}
+
+		private void collectProcedures() {
+			position = 0;
+			while (position < tokens.size()) {
+				if (!next().equals("to")) {
+					continue;
+				}
+				String name = next();
+				if (!isName(name) || COMMANDS.containsKey(name)
+						|| isKeyword(name) || procedureNames.containsKey(name)) {
+					throw error("Illegal procedure name " + name);
+				}
+				Procedure procedure = new Procedure();
+				while (position < tokens.size() && peek().startsWith(":")) {
+					procedure.parameters.add(next().substring(1));
+				}
+				procedure.bodyStart = position;
+				while (position < tokens.size() && !peek().equals("end")) {
+					if (peek().equals("to")) {
+						throw error("Procedure " + name + " lacks its end");
+					}
+					position++;
+				}
+				if (position == tokens.size()) {
+					throw error("Procedure " + name + " lacks its end");
+				}
+				procedure.bodyEnd = position++;
+				procedures.add(procedure);
+				procedureNames.put(name, procedure);
+			}
+		}
+
+		private void statement() {
+			int line = lines.get(position);
+			String word = next();
+
+			if (COMMANDS.containsKey(word)) {
+				int arity = ARITIES.get(word);
+				int opcode = COMMANDS.get(word);
+				int start = codeSize;
+				for (int i = 0; i < arity; i++) {
+					expression();
+				}
+				int constant = constantVariant(opcode);
+				if (constant >= 0 && codeSize == start + 2
+						&& code[start] == CONST) {
+					/* fold the constant argument into the command */
+					codeSize = start;
+					emit(constant, code[start + 1]);
+				} else {
+					emit(opcode);
+				}
+				depth -= arity;
+			} else if (word.equals("repeat")) {
+				int counter = locals++;
+				expression();
+				emit(INIT_LOOP, counter);
+				depth--;
+				emit(JUMP, 0);
+				int test = codeSize - 1;
+				int body = codeSize;
+				block();
+				code[test] = codeSize;
+				emit(LOOP, counter, body);
+			} else if (word.equals("if")) {
+				expression();
+				emit(JUMP_IF_FALSE, 0);
+				depth--;
+				int skip = codeSize - 1;
+				block();
+				code[skip] = codeSize;
+			} else if (word.equals("ifelse")) {
+				expression();
+				emit(JUMP_IF_FALSE, 0);
+				depth--;
+				int skip = codeSize - 1;
+				block();
+				emit(JUMP, 0);
+				int exit = codeSize - 1;
+				code[skip] = codeSize;
+				block();
+				code[exit] = codeSize;
+			} else if (word.equals("stop")) {
+				emit(current == null ? HALT : RETURN);
+			} else if (procedureNames.containsKey(word)) {
+				Procedure procedure = procedureNames.get(word);
+				for (int i = 0; i < procedure.parameters.size(); i++) {
+					expression();
+				}
+				emit(CALL, procedures.indexOf(procedure));
+				depth -= procedure.parameters.size();
+			} else {
+				throw new IllegalArgumentException("Line " + line
+						+ ": unknown command " + word);
+			}
+		}
+
+		private static int constantVariant(int opcode) {
+			switch (opcode) {
+			case FORWARD:
+				return FORWARD_CONST;
+			case BACK:
+				return BACK_CONST;
+			case LEFT:
+				return LEFT_CONST;
+			case RIGHT:
+				return RIGHT_CONST;
+			case SET_ANGLE:
+				return SET_ANGLE_CONST;
+			default:
+				return -1;
+			}
+		}
+
+		private void block() {
+			expect("[");
+			while (!peek().equals("]")) {
+				statement();
+			}
+			position++;
+		}
+
+		private void expression() {
+			sum();
+			String operator = peekOrEmpty();
+			int opcode = operator.equals("=") ? EQ : operator.equals("<>") ? NE
+					: operator.equals("<") ? LT : operator.equals(">") ? GT
+							: operator.equals("<=") ? LE
+									: operator.equals(">=") ? GE : -1;
+			if (opcode >= 0) {
+				position++;
+				sum();
+				binary(opcode);
+			}
+		}
+
+		private void sum() {
+			product();
+			for (;;) {
+				String operator = peekOrEmpty();
+				if (operator.equals("+")) {
+					position++;
+					product();
+					binary(ADD);
+				} else if (operator.equals("-")) {
+					position++;
+					product();
+					binary(SUB);
+				} else {
+					return;
+				}
+			}
+		}
+
+		private void product() {
+			factor();
+			for (;;) {
+				String operator = peekOrEmpty();
+				if (operator.equals("*")) {
+					position++;
+					factor();
+					binary(MUL);
+				} else if (operator.equals("/")) {
+					position++;
+					factor();
+					binary(DIV);
+				} else {
+					return;
+				}
+			}
+		}
+
+		private void factor() {
+			String token = next();
+			if (token.equals("-")) {
+				factor();
+				emit(NEG);
+			} else if (token.equals("(")) {
+				expression();
+				expect(")");
+			} else if (token.startsWith(":")) {
+				int slot = current == null ? -1 : current.parameters
+						.indexOf(token.substring(1));
+				if (slot < 0) {
+					throw error("Unknown parameter " + token);
+				}
+				emit(LOAD, slot);
+				push();
+			} else {
+				double value;
+				try {
+					value = Double.parseDouble(token);
+				} catch (NumberFormatException e) {
+					throw error("Number expected instead of " + token);
+				}
+				if (constantCount == constants.length) {
+					constants = Arrays.copyOf(constants, 2 * constantCount);
+				}
+				constants[constantCount] = value;
+				emit(CONST, constantCount++);
+				push();
+			}
+		}
+
+		private void binary(int opcode) {
+			emit(opcode);
+			depth--;
+		}
+
+		private void push() {
+			depth++;
+			maxDepth = Math.max(maxDepth, depth);
+		}
+
+		private void emit(int... words) {
+			if (codeSize + words.length > code.length) {
+				code = Arrays.copyOf(code, 2 * code.length + words.length);
+			}
+			System.arraycopy(words, 0, code, codeSize, words.length);
+			codeSize += words.length;
+		}
+
+		private void expect(String token) {
+			if (!next().equals(token)) {
+				position--;
+				throw error(token + " expected instead of " + peek());
+			}
+		}
+
+		private String next() {
+			if (position >= tokens.size()) {
+				throw error("Unexpected end of program");
+			}
+			return tokens.get(position++);
+		}
+
+		private String peek() {
+			if (position >= tokens.size()) {
+				throw error("Unexpected end of program");
+			}
+			return tokens.get(position);
+		}
+
+		private String peekOrEmpty() {
+			return position < tokens.size() ? tokens.get(position) : "";
+		}
+
+		/*
+		 * Names the line of the current token, or of the last token at the
+		 * end of the program.
+		 */
+		private IllegalArgumentException error(String message) {
+			int line = lines.isEmpty() ? 1 : lines.get(Math.min(Math.max(
+					position - 1, 0), lines.size() - 1));
+			return new IllegalArgumentException("Line " + line + ": "
+					+ message);
+		}
+
+		private static boolean isName(String token) {
+			return Character.isLetter(token.charAt(0));
+		}
+
+		private static boolean isKeyword(String token) {
+			return token.equals("to") || token.equals("end")
+					|| token.equals("repeat") || token.equals("if")
+					|| token.equals("ifelse") || token.equals("stop");
+		}
+
+		private void tokenize(String source) {
+			int line = 1;
+			int i = 0;
+			while (i < source.length()) {
+				char c = source.charAt(i);
+				int start = i;
+				if (c == '\n') {
+					line++;
+					i++;
+					continue;
+				} else if (Character.isWhitespace(c)) {
+					i++;
+					continue;
+				} else if (c == ';') {
+					while (i < source.length() && source.charAt(i) != '\n') {
+						i++;
+					}
+					continue;
+				} else if (Character.isLetterOrDigit(c) || c == '.'
+						|| c == ':' || c == '_') {
+					i++;
+					while (i < source.length()
+							&& (Character.isLetterOrDigit(source.charAt(i))
+									|| source.charAt(i) == '.' || source
+									.charAt(i) == '_')) {
+						i++;
+					}
+				} else if ((c == '<' || c == '>') && i + 1 < source.length()
+						&& (source.charAt(i + 1) == '=' || c == '<'
+								&& source.charAt(i + 1) == '>')) {
+					i += 2;
+				} else if ("+-*/=<>()[]".indexOf(c) >= 0) {
+					i++;
+				} else {
+					throw new IllegalArgumentException("Line " + line
+							+ ": unexpected character " + c);
+				}
+				tokens.add(source.substring(start, i).toLowerCase());
+				lines.add(line);
+			}
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package uistuff;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks together with the GC profiler, which reports the
+ * bytes allocated per operation (gc.alloc.rate.norm) next to the timings.
+ * Build and run with
+ *
+ * <pre>
+ * mvn -f benchmarks/pom.xml package
+ * java -cp benchmarks/target/benchmarks.jar uistuff.BenchmarkRunner [regex]
+ * </pre>
+ *
+ * The optional regular expression selects the benchmarks, e.g.
+ * TurtleBenchmark.drawLine. java -jar benchmarks/target/benchmarks.jar runs
+ * the plain JMH command line instead.
+ *
+ * The benchmarks using the PixelKernels run twice: with the SIMD kernels,
+ * and as Scalar...Benchmark with -Duistuff.scalarKernels=true, which gives
+ * the scalar baseline.
+ *
+ * @version 1.0
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(
+				args.length > 0 ? args[0] : "uistuff\\..*Benchmark").addProfiler(
+				GCProfiler.class).build();
+		new Runner(options).run();
+	}
+}
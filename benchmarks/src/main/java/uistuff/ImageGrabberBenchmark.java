@@ -0,0 +1,155 @@
+package uistuff;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of loading images with the ImageGrabber and of the color space
+ * conversions, per pixel with the floating point formulas as well as in
+ * bulk with the fixed-point kernels of the ColorConverter. The images are
+ * PNG files written into the temporary directory during the setup.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector",
+		"-Djava.awt.headless=true" })
+public class ImageGrabberBenchmark {
+	@Param( { "256", "1024" })
+	public int size;
+
+	private File imageFile;
+
+	private int[] pixels;
+
+	private int[] red;
+
+	private int[] green;
+
+	private int[] blue;
+
+	private int[] gray;
+
+	private double[] luminance;
+
+	private double[] blueDifference;
+
+	private double[] redDifference;
+
+	private byte[] samples;
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = new Random(42);
+		FrameBuffer image = new FrameBuffer(size, size);
+		pixels = image.getPixels();
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = 0xff000000 | random.nextInt(1 << 24);
+		}
+		imageFile = File.createTempFile("grabber", ".png");
+		ImageExporter.writePNG(image, imageFile.getPath());
+
+		int n = size * size;
+		red = new int[n];
+		green = new int[n];
+		blue = new int[n];
+		gray = new int[n];
+		luminance = new double[n];
+		blueDifference = new double[n];
+		redDifference = new double[n];
+		samples = new byte[3 * n];
+		for (int i = 0; i < n; i++) {
+			red[i] = (pixels[i] >> 16) & 0xff;
+			green[i] = (pixels[i] >> 8) & 0xff;
+			blue[i] = pixels[i] & 0xff;
+			double[] yCbCr = ImageGrabber.ImageGrabberUtilities
+					.convertRGBToYCbCr(red[i], green[i], blue[i]);
+			luminance[i] = yCbCr[0];
+			blueDifference[i] = yCbCr[1];
+			redDifference[i] = yCbCr[2];
+		}
+		ColorConverter.argbToYCbCr(pixels, 0, samples, 0, n, 2 * n, n);
+	}
+
+	@TearDown
+	public void tearDown() {
+		imageFile.delete();
+	}
+
+	@Benchmark
+	public int[][][] grabRGB() throws Exception {
+		return ImageGrabber.grabRGB(imageFile.getPath());
+	}
+
+	@Benchmark
+	public PackedRaster grabPackedRGB() throws Exception {
+		return ImageGrabber.grabPackedRGB(imageFile.getPath());
+	}
+
+	@Benchmark
+	public PlanarRaster grabPlanarGrayScale() throws Exception {
+		return ImageGrabber.grabPlanarGrayScale(imageFile.getPath());
+	}
+
+	@Benchmark
+	public int[][] grabGrayScale() throws Exception {
+		return ImageGrabber.grabGrayScale(imageFile.getPath());
+	}
+
+	@Benchmark
+	public void convertRGBToYCbCr(Blackhole blackhole) {
+		for (int i = 0; i < red.length; i++) {
+			blackhole.consume(ImageGrabber.ImageGrabberUtilities
+					.convertRGBToYCbCr(red[i], green[i], blue[i]));
+		}
+	}
+
+	@Benchmark
+	public void convertYCbCrToRGB(Blackhole blackhole) {
+		for (int i = 0; i < luminance.length; i++) {
+			blackhole.consume(ImageGrabber.ImageGrabberUtilities
+					.convertYCbCrToRGB(luminance[i], blueDifference[i],
+							redDifference[i]));
+		}
+	}
+
+	@Benchmark
+	public byte[] fixedPointARGBToYCbCr() {
+		int n = pixels.length;
+		ColorConverter.argbToYCbCr(pixels, 0, samples, 0, n, 2 * n, n);
+		return samples;
+	}
+
+	@Benchmark
+	public int[] fixedPointYCbCrToARGB() {
+		int n = gray.length;
+		ColorConverter.yCbCrToARGB(samples, 0, n, 2 * n, gray, 0, n);
+		return gray;
+	}
+
+	@Benchmark
+	public int[] fixedPointARGBToGray() {
+		ColorConverter.argbToGray(pixels, 0, gray, 0, pixels.length);
+		return gray;
+	}
+}
@@ -0,0 +1,68 @@
+package uistuff;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the pixel packing done by Presenter.viewImage and by every
+ * frame of a movie showing int[][][] or int[][] pictures.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector",
+		"-Djava.awt.headless=true" })
+public class PresenterBenchmark {
+	@Param( { "320", "1024", "2048" })
+	public int size;
+
+	private int[][][] rgbImage;
+
+	private int[][] grayScaleImage;
+
+	private int[] pixels;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		rgbImage = new int[size][size][3];
+		grayScaleImage = new int[size][size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				for (int c = 0; c < 3; c++) {
+					rgbImage[y][x][c] = random.nextInt(256);
+				}
+				grayScaleImage[y][x] = random.nextInt(256);
+			}
+		}
+		pixels = new int[size * size];
+	}
+
+	@Benchmark
+	public int[] packRGB() {
+		Presenter.packRGB(rgbImage, pixels);
+		return pixels;
+	}
+
+	@Benchmark
+	public int[] packGrayScale() {
+		Presenter.packGrayScale(grayScaleImage, pixels);
+		return pixels;
+	}
+}
@@ -0,0 +1,15 @@
+package uistuff;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * The benchmarks of {@link ImageGrabberBenchmark} with the scalar
+ * PixelKernels, forced by -Duistuff.scalarKernels=true. Together with the
+ * inherited class they compare the SIMD kernels with their scalar baseline.
+ *
+ * @version 1.0
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Duistuff.scalarKernels=true",
+		"-Djava.awt.headless=true" })
+public class ScalarImageGrabberBenchmark extends ImageGrabberBenchmark {
+}
@@ -0,0 +1,14 @@
+package uistuff;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * The benchmarks of {@link PresenterBenchmark} with the scalar PixelKernels,
+ * forced by -Duistuff.scalarKernels=true.
+ *
+ * @version 1.0
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Duistuff.scalarKernels=true",
+		"-Djava.awt.headless=true" })
+public class ScalarPresenterBenchmark extends PresenterBenchmark {
+}
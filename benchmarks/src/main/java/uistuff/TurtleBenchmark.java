@@ -0,0 +1,151 @@
+package uistuff;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the turtle graphics: single lines of several slopes and
+ * lengths, lines mostly outside of the canvas, erasing the canvas and
+ * programs consisting of many short forward moves like
+ * maincontrol.Staircase.
+ *
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector",
+		"-Djava.awt.headless=true" })
+public class TurtleBenchmark {
+	@State(Scope.Thread)
+	public static class LineState {
+		/* the angle of the line in degrees, 0 is horizontal */
+		@Param( { "0", "30", "45", "80", "90" })
+		public int slope;
+
+		@Param( { "10", "500" })
+		public int length;
+
+		FrameBuffer canvas;
+
+		DrawingTurtle turtle;
+
+		int x1;
+
+		int y1;
+
+		int x2;
+
+		int y2;
+
+		@Setup
+		public void setup() {
+			canvas = new FrameBuffer(1024, 1024);
+			turtle = new DrawingTurtle(canvas);
+			x1 = 512 - length / 2;
+			y1 = 512 - length / 2;
+			x2 = x1 + (int) Math.round(length * Math.cos(Math.toRadians(slope)));
+			y2 = y1 + (int) Math.round(length * Math.sin(Math.toRadians(slope)));
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class CanvasState {
+		/* 1920 is HD, 3840 is 4K, both with an aspect ratio of 16:9 */
+		@Param( { "320", "1920", "3840" })
+		public int width;
+
+		FrameBuffer canvas;
+
+		DrawingTurtle turtle;
+
+		@Setup
+		public void setup() {
+			canvas = new FrameBuffer(width, width * 9 / 16);
+			turtle = new DrawingTurtle(canvas);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class ProgramState {
+		FrameBuffer canvas;
+
+		DrawingTurtle turtle;
+
+		TurtleScript staircase;
+
+		@Setup
+		public void setup() {
+			canvas = new FrameBuffer(300, 300);
+			turtle = new DrawingTurtle(canvas);
+			staircase = TurtleScript
+					.compile("setpos 10 10 setangle 0 repeat 14 [ fd 20 lt 90 fd 20 rt 90 ]");
+		}
+	}
+
+	@Benchmark
+	public FrameBuffer drawLine(LineState state) {
+		state.turtle.drawLine(state.x1, state.y1, state.x2, state.y2);
+		return state.canvas;
+	}
+
+	/* a line of which only a small part lies inside the canvas */
+	@Benchmark
+	public FrameBuffer drawClippedLine(LineState state) {
+		state.turtle.drawLine(state.x1 - 100000, state.y1 - 50000,
+				state.x2 + 100000, state.y2 + 50000);
+		return state.canvas;
+	}
+
+	@Benchmark
+	public FrameBuffer erase(CanvasState state) {
+		state.turtle.erase();
+		return state.canvas;
+	}
+
+	/* the loop of maincontrol.Staircase */
+	@Benchmark
+	public FrameBuffer staircase(ProgramState state) {
+		DrawingTurtle turtle = state.turtle;
+		turtle.setPos(10, 10);
+		turtle.setAngle(0);
+		for (int i = 0; i < 14; i++) {
+			turtle.forward(20);
+			turtle.left(90);
+			turtle.forward(20);
+			turtle.right(90);
+		}
+		return state.canvas;
+	}
+
+	@Benchmark
+	public FrameBuffer staircaseScript(ProgramState state) {
+		state.staircase.run(state.turtle);
+		return state.canvas;
+	}
+
+	/* many short moves in all directions, most of them with table angles */
+	@Benchmark
+	public FrameBuffer spiral(ProgramState state) {
+		DrawingTurtle turtle = state.turtle;
+		turtle.setPos(150, 150);
+		turtle.setAngle(0);
+		for (int i = 0; i < 1000; i++) {
+			turtle.forward(i % 100 / 10.0);
+			turtle.left(7);
+		}
+		return state.canvas;
+	}
+}